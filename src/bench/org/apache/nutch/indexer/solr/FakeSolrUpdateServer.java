@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.indexer.solr;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.solr.common.util.JavaBinCodec;
+import org.apache.solr.common.util.NamedList;
+import org.mortbay.jetty.Request;
+import org.mortbay.jetty.Server;
+import org.mortbay.jetty.handler.AbstractHandler;
+import org.mortbay.jetty.nio.SelectChannelConnector;
+import org.mortbay.thread.QueuedThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An in-process stand-in for the update handlers of Solr cores, to load
+ * {@link SolrWriter} without a cluster. Every POST to a path ending in
+ * <code>/update</code> or <code>/update/javabin</code>, on any core, is read
+ * to the end and answered with an empty success response in the format the
+ * client asked for; other requests get the same answer without being
+ * counted.
+ *
+ * Requests can be slowed down by a fixed latency plus a random jitter,
+ * limited to a number of requests per second, and failed at random with a
+ * given HTTP status, e.g. 503 to exercise retries and the circuit breaker
+ * or 400 for the dead letter log. The size of every update request is
+ * logged at debug level and summed up in {@link #toString()}.
+ */
+public class FakeSolrUpdateServer {
+
+  public static final Logger LOG = LoggerFactory.getLogger(FakeSolrUpdateServer.class);
+
+  private final int port;
+  private long latencyMs;
+  private long jitterMs;
+  private double maxRequestsPerSecond;
+  private double errorRate;
+  private int errorStatus = 503;
+  private int threads = 64;
+
+  private Server server;
+  private SelectChannelConnector connector;
+  private final Random random = new Random(42);
+  /** Earliest time the next request may start with a throughput cap. */
+  private long nextSlotNanos;
+
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong commits = new AtomicLong();
+  private final AtomicLong errors = new AtomicLong();
+  private final AtomicLong bytes = new AtomicLong();
+  private final AtomicLong minBytes = new AtomicLong(Long.MAX_VALUE);
+  private final AtomicLong maxBytes = new AtomicLong();
+
+  /**
+   * @param port
+   *          port to listen on, 0 for any free one
+   */
+  public FakeSolrUpdateServer(int port) {
+    this.port = port;
+  }
+
+  /** Fixed time every update request takes. */
+  public FakeSolrUpdateServer setLatency(long latencyMs, long jitterMs) {
+    this.latencyMs = latencyMs;
+    this.jitterMs = jitterMs;
+    return this;
+  }
+
+  /** Update requests started per second at most, 0 for no limit. */
+  public FakeSolrUpdateServer setMaxRequestsPerSecond(double max) {
+    this.maxRequestsPerSecond = max;
+    return this;
+  }
+
+  /**
+   * @param rate
+   *          fraction of update requests that fail, from 0 to 1
+   * @param status
+   *          HTTP status of the failed requests
+   */
+  public FakeSolrUpdateServer setErrors(double rate, int status) {
+    this.errorRate = rate;
+    this.errorStatus = status;
+    return this;
+  }
+
+  /** Requests handled at the same time. */
+  public FakeSolrUpdateServer setThreads(int threads) {
+    this.threads = threads;
+    return this;
+  }
+
+  public void start() throws Exception {
+    server = new Server();
+    connector = new SelectChannelConnector();
+    connector.setHost("127.0.0.1");
+    connector.setPort(port);
+    server.addConnector(connector);
+    server.setThreadPool(new QueuedThreadPool(threads));
+    server.setHandler(new AbstractHandler() {
+      public void handle(String target, HttpServletRequest request,
+          HttpServletResponse response, int dispatch) throws IOException {
+        FakeSolrUpdateServer.this.handle(target, request, response);
+        ((Request) request).setHandled(true);
+      }
+    });
+    server.start();
+    LOG.info("Fake Solr listening at " + getUrl());
+  }
+
+  public void stop() throws Exception {
+    server.stop();
+  }
+
+  /**
+   * @return the URL of a core, e.g. to set as {@link SolrConstants#SERVER_URL}
+   */
+  public String getUrl(String core) {
+    return "http://127.0.0.1:" + connector.getLocalPort() + "/solr/" + core;
+  }
+
+  public String getUrl() {
+    return "http://127.0.0.1:" + connector.getLocalPort() + "/solr";
+  }
+
+  private void handle(String target, HttpServletRequest request,
+      HttpServletResponse response) throws IOException {
+    // parameters first, a commit may be posted as a form
+    boolean commit = "true".equals(request.getParameter("commit"));
+    boolean javabin = "javabin".equals(request.getParameter("wt"));
+    long length = drain(request.getInputStream());
+    boolean update = "POST".equals(request.getMethod())
+        && (target.endsWith("/update") || target.endsWith("/update/javabin"));
+    if (update) {
+      requests.incrementAndGet();
+      bytes.addAndGet(length);
+      updateMin(length);
+      updateMax(length);
+      if (commit) {
+        commits.incrementAndGet();
+      }
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("POST " + target + " " + length + " bytes");
+      }
+      try {
+        delay();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        return;
+      }
+      if (fail()) {
+        errors.incrementAndGet();
+        response.sendError(errorStatus, "Injected failure");
+        return;
+      }
+    }
+    respond(response, javabin);
+  }
+
+  private static long drain(InputStream in) throws IOException {
+    byte[] buffer = new byte[8192];
+    long length = 0;
+    int n;
+    while ((n = in.read(buffer)) > 0) {
+      length += n;
+    }
+    return length;
+  }
+
+  private void delay() throws InterruptedException {
+    long waitNanos = 0;
+    if (maxRequestsPerSecond > 0) {
+      long interval = (long) (1e9 / maxRequestsPerSecond);
+      synchronized (this) {
+        long now = System.nanoTime();
+        long slot = Math.max(now, nextSlotNanos);
+        nextSlotNanos = slot + interval;
+        waitNanos = slot - now;
+      }
+    }
+    long jitter = 0;
+    if (jitterMs > 0) {
+      synchronized (random) {
+        jitter = (long) (random.nextDouble() * jitterMs);
+      }
+    }
+    long millis = waitNanos / 1000000 + latencyMs + jitter;
+    if (millis > 0) {
+      Thread.sleep(millis);
+    }
+  }
+
+  private boolean fail() {
+    if (errorRate <= 0) {
+      return false;
+    }
+    synchronized (random) {
+      return random.nextDouble() < errorRate;
+    }
+  }
+
+  /** An empty response with status 0, as javabin or XML. */
+  private static void respond(HttpServletResponse response, boolean javabin)
+      throws IOException {
+    response.setStatus(HttpServletResponse.SC_OK);
+    OutputStream out = response.getOutputStream();
+    if (javabin) {
+      response.setContentType("application/octet-stream");
+      NamedList<Object> header = new NamedList<Object>();
+      header.add("status", 0);
+      header.add("QTime", 0);
+      NamedList<Object> body = new NamedList<Object>();
+      body.add("responseHeader", header);
+      new JavaBinCodec().marshal(body, out);
+    } else {
+      response.setContentType("application/xml; charset=UTF-8");
+      out.write(("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<response>"
+          + "<lst name=\"responseHeader\"><int name=\"status\">0</int>"
+          + "<int name=\"QTime\">0</int></lst></response>\n").getBytes("UTF-8"));
+    }
+    out.flush();
+  }
+
+  private void updateMin(long length) {
+    long min;
+    while (length < (min = minBytes.get())
+        && !minBytes.compareAndSet(min, length)) {
+    }
+  }
+
+  private void updateMax(long length) {
+    long max;
+    while (length > (max = maxBytes.get())
+        && !maxBytes.compareAndSet(max, length)) {
+    }
+  }
+
+  /** @return update requests received */
+  public long getRequests() {
+    return requests.get();
+  }
+
+  public long getCommits() {
+    return commits.get();
+  }
+
+  /** @return update requests failed on purpose */
+  public long getErrors() {
+    return errors.get();
+  }
+
+  /** @return bytes of all update request bodies */
+  public long getBytes() {
+    return bytes.get();
+  }
+
+  @Override
+  public String toString() {
+    long n = requests.get();
+    return n + " update requests (" + commits.get() + " commits, "
+        + errors.get() + " failed on purpose), request size min/avg/max "
+        + (n == 0 ? 0 : minBytes.get()) + "/" + (n == 0 ? 0 : bytes.get() / n)
+        + "/" + maxBytes.get() + " bytes";
+  }
+}
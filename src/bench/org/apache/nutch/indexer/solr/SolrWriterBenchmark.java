@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.indexer.solr;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.nutch.indexer.NutchDocument;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.impl.CommonsHttpSolrServer;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how {@link SolrWriter} writes to a shard, without the network:
+ * field mapping, sanitizing, size estimates and batching in
+ * {@link SolrShard#write}, with every batch handed to a server that answers
+ * right away. Documents look like indexed pages with
+ * <code>contentLength</code> characters of content.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SolrWriterBenchmark {
+
+  @Param({ "1024", "65536" })
+  public int contentLength;
+
+  private SolrShard shard;
+  private NutchDocument[] docs;
+  private int next;
+
+  @Setup
+  public void setUp() throws IOException {
+    Configuration conf = new Configuration();
+    shard = new SolrShard(new NoOpSolrServer("http://localhost:8983/solr"),
+        conf, new ModifiableSolrParams(), SolrMappingReader.getInstance(conf),
+        null, new SolrWriterMetrics(new TaskAttemptContext(conf,
+            new TaskAttemptID()), conf), 0);
+    docs = documents(64, contentLength);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    shard.close();
+  }
+
+  @Benchmark
+  public void write() throws IOException {
+    shard.write(docs[next]);
+    next = (next + 1) % docs.length;
+  }
+
+  private static NutchDocument[] documents(int count, int contentLength) {
+    Random random = new Random(42);
+    String[] words = { "nutch", "index", "solr", "content", "crawl",
+        "\u00e9t\u00e9", "\u4e2d\u6587", "page" };
+    NutchDocument[] result = new NutchDocument[count];
+    for (int i = 0; i < count; i++) {
+      String url = "http://localhost:8080/help/area" + i % 8 + "/page" + i
+          + ".htm";
+      StringBuilder content = new StringBuilder(contentLength + 16);
+      while (content.length() < contentLength) {
+        content.append(words[random.nextInt(words.length)]).append(' ');
+      }
+      NutchDocument doc = new NutchDocument();
+      doc.add("id", url);
+      doc.add("url", url);
+      doc.add("host", "localhost");
+      doc.add("title", "Page " + i);
+      doc.add("content", content.toString());
+      doc.add("digest", Long.toHexString(random.nextLong()));
+      doc.add("tstamp", "2013-01-01T00:00:00Z");
+      doc.add("anchor", "Section " + i);
+      doc.add("anchor", "Page " + i);
+      doc.setScore(1.0f);
+      result[i] = doc;
+    }
+    return result;
+  }
+
+  /** Answers every request with an empty response. */
+  static class NoOpSolrServer extends CommonsHttpSolrServer {
+    private static final long serialVersionUID = 1L;
+
+    NoOpSolrServer(String url) throws MalformedURLException {
+      super(url);
+    }
+
+    @Override
+    public NamedList<Object> request(SolrRequest request) {
+      return new NamedList<Object>();
+    }
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.indexer.solr;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.nutch.indexer.NutchDocument;
+import org.apache.nutch.util.NutchConfiguration;
+
+/**
+ * Feeds synthetic documents through {@link SolrWriter#open},
+ * {@link SolrWriter#write} and {@link SolrWriter#close}, as an indexing task
+ * does, against a {@link FakeSolrUpdateServer} in the same JVM, and reports
+ * documents per second, the heap high-water mark and the requests the
+ * server got. Batching, sender threads, retries and streaming are set with
+ * the usual solr.* properties, e.g.
+ * <code>-D solr.writer.threads=4 -D solr.commit.size=500</code>.
+ *
+ * Content lengths follow a log-normal distribution with the given median
+ * and sigma, so a few documents are much larger than most; the contents
+ * are generated before the run, so only indexing is measured.
+ */
+public class SolrWriterLoadTest {
+
+  /** Distinct contents the documents cycle through. */
+  private static final int CONTENTS = 256;
+  private static final String[] WORDS = { "nutch", "index", "solr",
+      "content", "crawl", "\u00e9t\u00e9", "\u4e2d\u6587", "page" };
+
+  private final Configuration conf;
+  private final String[] contents;
+  private long contentChars;
+
+  SolrWriterLoadTest(Configuration conf, int medianLength, double sigma,
+      int maxLength) {
+    this.conf = conf;
+    Random random = new Random(42);
+    contents = new String[CONTENTS];
+    for (int i = 0; i < CONTENTS; i++) {
+      int length = (int) Math.min(maxLength,
+          medianLength * Math.exp(sigma * random.nextGaussian()));
+      StringBuilder content = new StringBuilder(length + 16);
+      while (content.length() < length) {
+        content.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+      }
+      contents[i] = content.toString();
+    }
+  }
+
+  /**
+   * Writes <code>docs</code> documents and closes the writer.
+   *
+   * @return the time it took, in nanoseconds
+   */
+  long run(int docs) throws IOException {
+    SolrWriter writer = new SolrWriter();
+    long start = System.nanoTime();
+    writer.open(new TaskAttemptContext(conf, new TaskAttemptID()));
+    contentChars = 0;
+    for (int i = 0; i < docs; i++) {
+      writer.write(document(i));
+    }
+    writer.close();
+    return System.nanoTime() - start;
+  }
+
+  private NutchDocument document(int i) {
+    String url = "http://localhost:8080/help/area" + i % 64 + "/page" + i
+        + ".htm";
+    String content = contents[i % CONTENTS];
+    contentChars += content.length();
+    NutchDocument doc = new NutchDocument();
+    doc.add("id", url);
+    doc.add("url", url);
+    doc.add("host", "localhost");
+    doc.add("title", "Page " + i);
+    doc.add("content", content);
+    doc.add("digest", Integer.toHexString(i));
+    doc.add("tstamp", "2013-01-01T00:00:00Z");
+    doc.add("anchor", "Page " + i);
+    doc.setScore(1.0f);
+    return doc;
+  }
+
+  /**
+   * Samples the used heap, to report its high-water mark.
+   */
+  static class HeapSampler extends Thread {
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private volatile boolean done;
+    private volatile long max;
+
+    HeapSampler() {
+      super("HeapSampler");
+      setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+      while (!done) {
+        max = Math.max(max, memory.getHeapMemoryUsage().getUsed());
+        try {
+          Thread.sleep(20);
+        } catch (InterruptedException e) {
+          return;
+        }
+      }
+    }
+
+    /** @return the most heap used, in bytes */
+    long finish() throws InterruptedException {
+      done = true;
+      join();
+      return max;
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    String usage = SolrWriterLoadTest.class.getName()
+        + " [-docs n] [-rounds n] [-sizeMedian chars] [-sizeSigma s]"
+        + " [-sizeMax chars] [-cores n] [-latency ms] [-jitter ms]"
+        + " [-maxRequestsPerSecond n] [-errorRate r] [-errorStatus code]"
+        + " [-serverThreads n] [-D name=value ...]";
+    int docs = 100000;
+    int rounds = 1;
+    int sizeMedian = 8192;
+    double sizeSigma = 1.0;
+    int sizeMax = 1024 * 1024;
+    int cores = 1;
+    long latency = 0;
+    long jitter = 0;
+    double maxRps = 0;
+    double errorRate = 0;
+    int errorStatus = 503;
+    int serverThreads = 64;
+    Configuration conf = NutchConfiguration.create();
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-docs")) {
+        docs = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-rounds")) {
+        rounds = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-sizeMedian")) {
+        sizeMedian = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-sizeSigma")) {
+        sizeSigma = Double.parseDouble(args[++i]);
+      } else if (args[i].equals("-sizeMax")) {
+        sizeMax = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-cores")) {
+        cores = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-latency")) {
+        latency = Long.parseLong(args[++i]);
+      } else if (args[i].equals("-jitter")) {
+        jitter = Long.parseLong(args[++i]);
+      } else if (args[i].equals("-maxRequestsPerSecond")) {
+        maxRps = Double.parseDouble(args[++i]);
+      } else if (args[i].equals("-errorRate")) {
+        errorRate = Double.parseDouble(args[++i]);
+      } else if (args[i].equals("-errorStatus")) {
+        errorStatus = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-serverThreads")) {
+        serverThreads = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-D") && i + 1 < args.length
+          && args[i + 1].indexOf('=') > 0) {
+        String property = args[++i];
+        int eq = property.indexOf('=');
+        conf.set(property.substring(0, eq), property.substring(eq + 1));
+      } else {
+        System.err.println(usage);
+        return;
+      }
+    }
+
+    FakeSolrUpdateServer server = new FakeSolrUpdateServer(0)
+        .setLatency(latency, jitter).setMaxRequestsPerSecond(maxRps)
+        .setErrors(errorRate, errorStatus).setThreads(serverThreads);
+    server.start();
+    try {
+      if (cores > 1) {
+        StringBuilder urls = new StringBuilder();
+        for (int i = 0; i < cores; i++) {
+          urls.append(i > 0 ? "," : "").append(server.getUrl("core" + i));
+        }
+        conf.set(SolrConstants.SERVER_URLS, urls.toString());
+      } else {
+        conf.set(SolrConstants.SERVER_URL, server.getUrl());
+      }
+      SolrWriterLoadTest test = new SolrWriterLoadTest(conf, sizeMedian,
+          sizeSigma, sizeMax);
+      for (int round = 1; round <= rounds; round++) {
+        // the last round is reported, the others warm up the JVM
+        System.gc();
+        long requests = server.getRequests();
+        long errors = server.getErrors();
+        long bytes = server.getBytes();
+        HeapSampler heap = new HeapSampler();
+        heap.start();
+        long nanos = test.run(docs);
+        long maxHeap = heap.finish();
+        double seconds = nanos / 1e9;
+        System.out.println(String.format("round %d: %d docs in %.2f s, "
+            + "%.0f docs/s, %.1f MB/s of content, heap high-water %d MB",
+            round, docs, seconds, docs / seconds,
+            test.contentChars / seconds / (1024 * 1024),
+            maxHeap / (1024 * 1024)));
+        System.out.println(String.format("  %d update requests, %d failed on"
+            + " purpose, %.1f docs and %d KB per request",
+            server.getRequests() - requests, server.getErrors() - errors,
+            (double) docs / Math.max(1, server.getRequests() - requests),
+            (server.getBytes() - bytes)
+                / Math.max(1, server.getRequests() - requests) / 1024));
+      }
+      System.out.println(server);
+    } finally {
+      server.stop();
+    }
+  }
+}
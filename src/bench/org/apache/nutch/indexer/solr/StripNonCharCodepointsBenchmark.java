@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.indexer.solr;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link NonCharCodepointStripper} with the char-by-char
+ * <code>StringBuilder</code> implementation it replaced. Run on real crawl
+ * content with <code>-p corpus=/path/to/dir</code>, a directory of UTF-8
+ * files such as dumped <code>content</code> fields.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StripNonCharCodepointsBenchmark {
+
+  /** Directory of UTF-8 files; synthetic text is used if empty. */
+  @Param({ "" })
+  public String corpus;
+
+  /**
+   * For synthetic text, every n-th char is a control char; 0 keeps the text
+   * clean.
+   */
+  @Param({ "0", "4096" })
+  public int dirtyEvery;
+
+  private String[] texts;
+  private int next;
+  private NonCharCodepointStripper stripper;
+
+  @Setup
+  public void setUp() throws IOException {
+    texts = corpus.length() == 0 ? syntheticTexts() : readTexts(new File(corpus));
+    stripper = new NonCharCodepointStripper();
+  }
+
+  @Benchmark
+  public String legacy() {
+    return legacyStrip(nextText());
+  }
+
+  @Benchmark
+  public String stripper() {
+    return stripper.strip(nextText());
+  }
+
+  /** The static entry point, creating a stripper per call. */
+  @Benchmark
+  public String solrWriter() {
+    return SolrWriter.stripNonCharCodepoints(nextText());
+  }
+
+  private String nextText() {
+    String text = texts[next];
+    next = (next + 1) % texts.length;
+    return text;
+  }
+
+  private String[] syntheticTexts() {
+    Random random = new Random(42);
+    String[] words = { "nutch", "index", "solr", "content", "crawl",
+        "\u00e9t\u00e9", "\u4e2d\u6587", "\ud83d\ude00", "page" };
+    String[] result = new String[32];
+    for (int i = 0; i < result.length; i++) {
+      StringBuilder sb = new StringBuilder(64 * 1024);
+      int nextDirty = dirtyEvery;
+      while (sb.length() < 64 * 1024) {
+        if (dirtyEvery > 0 && sb.length() >= nextDirty) {
+          sb.append('\u0001');
+          nextDirty += dirtyEvery;
+        }
+        sb.append(words[random.nextInt(words.length)]).append(' ');
+      }
+      result[i] = sb.toString();
+    }
+    return result;
+  }
+
+  private static String[] readTexts(File dir) throws IOException {
+    List<String> result = new ArrayList<String>();
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (file.isFile()) {
+          byte[] bytes = new byte[(int) file.length()];
+          DataInputStream in = new DataInputStream(new FileInputStream(file));
+          try {
+            in.readFully(bytes);
+          } finally {
+            in.close();
+          }
+          result.add(new String(bytes, "UTF-8"));
+        }
+      }
+    }
+    if (result.isEmpty()) {
+      throw new IOException("No files in " + dir);
+    }
+    return result.toArray(new String[result.size()]);
+  }
+
+  /** The implementation before {@link NonCharCodepointStripper}. */
+  private static String legacyStrip(String input) {
+    StringBuilder retval = new StringBuilder();
+    char ch;
+
+    for (int i = 0; i < input.length(); i++) {
+      ch = input.charAt(i);
+      if (ch % 0x10000 != 0xffff && ch % 0x10000 != 0xfffe
+          && (ch <= 0xfdd0 || ch >= 0xfdef)
+          && (ch > 0x1F || ch == 0x9 || ch == 0xa || ch == 0xd)) {
+        retval.append(ch);
+      }
+    }
+
+    return retval.toString();
+  }
+}
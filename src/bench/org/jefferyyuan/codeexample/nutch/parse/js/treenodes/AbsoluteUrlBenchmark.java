@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jefferyyuan.codeexample.nutch.parse.js.treenodes;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link JSExtractionSettings#toAbsoluteUrl} on the kinds of
+ * references found in navigation scripts, with the resolver cache
+ * (<code>cacheSize</code> larger than the references) and without it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AbsoluteUrlBenchmark {
+
+  private static final String BASE = "http://localhost:8080/help/nav/";
+
+  @Param({ "0", "10000" })
+  public int cacheSize;
+
+  private JSExtractionSettings settings;
+  private String[] refs;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    Configuration conf = new Configuration();
+    conf.setInt("ext.js.url.cache.size", cacheSize);
+    settings = new JSExtractionSettings(conf);
+    refs = new String[1000];
+    for (int i = 0; i < refs.length; i++) {
+      switch (i % 4) {
+      case 0:
+        refs[i] = "../../products/area" + i % 50 + "/page" + i + ".htm";
+        break;
+      case 1:
+        refs[i] = "./guide/page" + i + ".html?v=2#top";
+        break;
+      case 2:
+        refs[i] = "/pdf/manual" + i + ".pdf";
+        break;
+      default:
+        refs[i] = "www.Example.com:80/docs/page" + i + ".htm";
+      }
+    }
+  }
+
+  @Benchmark
+  public String toAbsoluteUrl() {
+    String ref = refs[next];
+    next = (next + 1) % refs.length;
+    return settings.toAbsoluteUrl(BASE, ref);
+  }
+}
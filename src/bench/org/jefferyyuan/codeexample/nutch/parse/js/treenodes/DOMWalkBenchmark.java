@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jefferyyuan.codeexample.nutch.parse.js.treenodes;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.Element;
+
+/**
+ * Measures collecting the scripts of a page with
+ * {@link ExtJSParseFilter#walk}, on generated fragments of
+ * <code>elements</code> elements: nested divs and lists with text, links,
+ * event handlers and an inline script every 50 elements.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DOMWalkBenchmark {
+
+  @Param({ "100", "1000", "10000" })
+  public int elements;
+
+  private DocumentFragment fragment;
+
+  @Setup
+  public void setUp() throws ParserConfigurationException {
+    Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+        .newDocument();
+    fragment = doc.createDocumentFragment();
+    Element body = doc.createElement("body");
+    fragment.appendChild(body);
+    Random random = new Random(42);
+    Element parent = body;
+    for (int i = 0; i < elements; i++) {
+      Element e;
+      if (i % 50 == 49) {
+        e = doc.createElement("script");
+        e.appendChild(doc.createTextNode("var page" + i + " = 'page" + i
+            + ".htm'; show(page" + i + ");"));
+      } else if (i % 5 == 4) {
+        e = doc.createElement("a");
+        e.setAttribute("href", i % 10 == 9 ? "javascript:go('p" + i + ".htm')"
+            : "p" + i + ".htm");
+        e.setAttribute("class", "nav");
+        e.appendChild(doc.createTextNode("Link " + i));
+      } else {
+        e = doc.createElement(i % 2 == 0 ? "div" : "li");
+        if (i % 7 == 0) {
+          e.setAttribute("onclick", "toggle(" + i + ")");
+        }
+        e.appendChild(doc.createTextNode("Some text of element " + i));
+      }
+      parent.appendChild(e);
+      // go down into containers, and back up now and then
+      if (e.getNodeName().equals("div") && random.nextBoolean()) {
+        parent = e;
+      } else if (parent != body && random.nextInt(4) == 0) {
+        parent = (Element) parent.getParentNode();
+      }
+    }
+  }
+
+  @Benchmark
+  public int walk() {
+    StringBuilder scripts = new StringBuilder();
+    int[] bounds = ExtJSParseFilter.walk(fragment, scripts);
+    return bounds[bounds.length - 1] + scripts.length();
+  }
+}
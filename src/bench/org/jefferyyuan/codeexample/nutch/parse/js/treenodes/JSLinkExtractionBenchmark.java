@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jefferyyuan.codeexample.nutch.parse.js.treenodes;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.nutch.parse.Outlink;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link ExtJSParseFilter#getJSLinks} end to end: finding the
+ * candidates, resolving them and building the outlinks. Runs on generated
+ * tree_nodes.js files with <code>entries</code> menu entries, or on recorded
+ * ones with <code>-p corpus=/path/to/dir</code>, a directory of UTF-8 .js
+ * files, which are used in turn.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JSLinkExtractionBenchmark {
+
+  private static final String BASE = "http://localhost:8080/help/nav/tree_nodes.js";
+
+  /** Directory of recorded scripts; generated ones are used if empty. */
+  @Param({ "" })
+  public String corpus;
+
+  /** Menu entries of a generated script. */
+  @Param({ "100", "1000", "10000" })
+  public int entries;
+
+  /** Use the lexer or the outlink pattern of conf/nutch-site.xml. */
+  @Param({ "true", "false" })
+  public boolean lexer;
+
+  private ExtJSParseFilter filter;
+  private String[] scripts;
+  private int next;
+
+  @Setup
+  public void setUp() throws IOException {
+    scripts = corpus.length() == 0 ? new String[] { treeNodes(entries) }
+        : readScripts(new File(corpus));
+    Configuration conf = new Configuration();
+    conf.set("ext.js.extract.outlink.pattern", "\\\"([^\\\"]*.[htm|html|pdf])\\\"");
+    conf.setBoolean("ext.js.extract.outlink.lexer", lexer);
+    filter = new ExtJSParseFilter();
+    filter.setConf(conf);
+  }
+
+  @Benchmark
+  public Outlink[] getJSLinks() {
+    String script = scripts[next];
+    next = (next + 1) % scripts.length;
+    return filter.getJSLinks(script, "", BASE);
+  }
+
+  /** A tree_nodes.js style array of menu entries, a third of them repeated. */
+  static String treeNodes(int entries) {
+    Random random = new Random(42);
+    String[] targets = { "main", "_blank" };
+    String[] extensions = { ".htm", ".html", ".pdf" };
+    StringBuilder sb = new StringBuilder("var TREE_NODES = [\n");
+    for (int i = 0; i < entries; i++) {
+      int page = i % 3 == 2 ? random.nextInt(i) : i;
+      sb.append("  [\"Section ").append(i).append("\", \"../../products/area")
+        .append(page % 50).append("/page").append(page)
+        .append(extensions[page % extensions.length]).append("\", \"")
+        .append(targets[random.nextInt(targets.length)]).append("\"],\n");
+    }
+    return sb.append("];\n").toString();
+  }
+
+  private static String[] readScripts(File dir) throws IOException {
+    List<String> result = new ArrayList<String>();
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (file.isFile()) {
+          byte[] bytes = new byte[(int) file.length()];
+          DataInputStream in = new DataInputStream(new FileInputStream(file));
+          try {
+            in.readFully(bytes);
+          } finally {
+            in.close();
+          }
+          result.add(new String(bytes, "UTF-8"));
+        }
+      }
+    }
+    if (result.isEmpty()) {
+      throw new IOException("No files in " + dir);
+    }
+    return result.toArray(new String[result.size()]);
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jefferyyuan.codeexample.nutch.parse.js.treenodes;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.oro.text.regex.MalformedPatternException;
+import org.apache.oro.text.regex.Pattern;
+import org.apache.oro.text.regex.PatternMatcher;
+import org.apache.oro.text.regex.PatternMatcherInput;
+import org.apache.oro.text.regex.Perl5Compiler;
+import org.apache.oro.text.regex.Perl5Matcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the ways {@link ExtJSParseFilter#getJSLinks} found outlink
+ * candidates: the ORO loop, the java.util.regex loop that replaced it, for
+ * the outlink pattern of conf/nutch-site.xml, and the string literal lexer
+ * with the default extensions. Only finding the candidates is measured,
+ * not building the outlinks.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JSLinkMatchingBenchmark {
+
+  @Param({ "\\\"([^\\\"]*.[htm|html|pdf])\\\"" })
+  public String pattern;
+
+  /**
+   * treeNodes: a tree_nodes.js style array of menu entries; longStrings:
+   * long string literals without links.
+   */
+  @Param({ "treeNodes", "longStrings" })
+  public String script;
+
+  private String text;
+  private Pattern oroPattern;
+  private java.util.regex.Pattern javaPattern;
+  private JSExtractionSettings settings;
+
+  @Setup
+  public void setUp() throws MalformedPatternException {
+    text = "treeNodes".equals(script) ? treeNodes(2000) : longStrings(64, 4096);
+    oroPattern = new Perl5Compiler().compile(pattern,
+        Perl5Compiler.READ_ONLY_MASK | Perl5Compiler.MULTILINE_MASK);
+    javaPattern = java.util.regex.Pattern.compile(pattern,
+        java.util.regex.Pattern.MULTILINE);
+    settings = new JSExtractionSettings(new Configuration());
+  }
+
+  @Benchmark
+  public int oro() {
+    PatternMatcher matcher = new Perl5Matcher();
+    PatternMatcherInput input = new PatternMatcherInput(text);
+    int length = 0;
+    while (matcher.contains(input, oroPattern)) {
+      length += matcher.getMatch().group(1).length();
+    }
+    return length;
+  }
+
+  @Benchmark
+  public int javaRegex() {
+    Matcher matcher = javaPattern.matcher(text);
+    int length = 0;
+    while (matcher.find()) {
+      length += matcher.group(1).length();
+    }
+    return length;
+  }
+
+  @Benchmark
+  public int lexer() {
+    JSStringLiteralScanner scanner = new JSStringLiteralScanner(text);
+    int length = 0;
+    while (scanner.next()) {
+      if (settings.hasOutlinkExtension(text, scanner.start(), scanner.end())) {
+        length += scanner.value().length();
+      }
+    }
+    return length;
+  }
+
+  private static String treeNodes(int entries) {
+    Random random = new Random(42);
+    String[] targets = { "main", "_blank" };
+    String[] extensions = { ".htm", ".html", ".pdf" };
+    StringBuilder sb = new StringBuilder("var TREE_NODES = [\n");
+    for (int i = 0; i < entries; i++) {
+      sb.append("  [\"Section ").append(i).append("\", \"../../products/area")
+        .append(random.nextInt(50)).append("/page").append(i)
+        .append(extensions[random.nextInt(extensions.length)]).append("\", \"")
+        .append(targets[random.nextInt(targets.length)]).append("\"],\n");
+    }
+    return sb.append("];\n").toString();
+  }
+
+  private static String longStrings(int strings, int length) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < strings; i++) {
+      sb.append("var s").append(i).append(" = \"");
+      for (int j = 0; j < length; j++) {
+        sb.append((char) ('a' + j % 26));
+      }
+      sb.append("\";\n");
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.indexer.elastic;
+
+public interface ElasticConstants {
+  public static final String ELASTIC_PREFIX = "elastic.";
+
+  /**
+   * Comma separated hosts to connect to with a transport client. If not set
+   * the writer joins {@link #CLUSTER} as a client node.
+   */
+  public static final String HOST = ELASTIC_PREFIX + "host";
+
+  /** Transport port of {@link #HOST}, 9300 by default. */
+  public static final String PORT = ELASTIC_PREFIX + "port";
+
+  public static final String CLUSTER = ELASTIC_PREFIX + "cluster";
+
+  /** Index to write to, "index" by default. */
+  public static final String INDEX = ELASTIC_PREFIX + "index";
+
+  /** Type of the documents, "doc" by default. */
+  public static final String TYPE = ELASTIC_PREFIX + "type";
+
+  /** Documents after which a bulk request is sent, 500 by default. */
+  public static final String MAX_BULK_DOCS = ELASTIC_PREFIX + "max.bulk.docs";
+
+  /**
+   * Size in bytes of the document sources after which a bulk request is
+   * sent, whichever of this and {@link #MAX_BULK_DOCS} is reached first.
+   * 5 MB by default.
+   */
+  public static final String MAX_BULK_LENGTH = ELASTIC_PREFIX + "max.bulk.size";
+
+  /**
+   * Bulk requests that may be in flight at the same time; the indexing task
+   * blocks when all are. 2 by default.
+   */
+  public static final String MAX_BULK_INFLIGHT = ELASTIC_PREFIX + "max.bulk.inflight";
+
+  /**
+   * Times a document is sent again after Elasticsearch rejected it for
+   * being overloaded or not ready, or after its whole bulk request failed.
+   * 3 by default.
+   */
+  public static final String MAX_RETRIES = ELASTIC_PREFIX + "max.retries";
+
+  /**
+   * Wait in milliseconds before the last documents are retried at close,
+   * doubled every round. 1000 by default.
+   */
+  public static final String RETRY_BACKOFF_MS = ELASTIC_PREFIX + "retry.backoff.ms";
+
+  /**
+   * Documents that may fail for good before the task fails; the failures are
+   * logged. 0 by default, -1 for no limit.
+   */
+  public static final String MAX_ITEM_FAILURES = ELASTIC_PREFIX + "max.item.failures";
+}
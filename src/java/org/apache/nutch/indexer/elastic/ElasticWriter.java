@@ -0,0 +1,377 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.indexer.elastic;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.nutch.indexer.NutchDocument;
+import org.apache.nutch.indexer.NutchIndexWriter;
+import org.apache.nutch.indexer.solr.NonCharCodepointStripper;
+import org.apache.nutch.indexer.solr.SolrConstants;
+import org.apache.nutch.indexer.solr.SolrFieldPlan;
+import org.apache.nutch.indexer.solr.SolrMappingReader;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.transport.InetSocketTransportAddress;
+import org.elasticsearch.node.Node;
+import org.elasticsearch.node.NodeBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes documents to Elasticsearch with the bulk API. Fields are mapped
+ * and sanitized as by {@link org.apache.nutch.indexer.solr.SolrWriter},
+ * with solrindex-mapping.xml. A bulk request is sent in the background once
+ * it holds {@link ElasticConstants#MAX_BULK_DOCS} documents or
+ * {@link ElasticConstants#MAX_BULK_LENGTH} bytes; up to
+ * {@link ElasticConstants#MAX_BULK_INFLIGHT} requests are in flight while
+ * the task fills the next one. The document score is sent as the
+ * {@value #BOOST_FIELD} field, the document boost of Elasticsearch.
+ *
+ * Every item of a response is checked. Documents rejected because the
+ * cluster is overloaded or not ready, and all documents of a request that
+ * failed as a whole, are added to a later bulk request again, up to
+ * {@link ElasticConstants#MAX_RETRIES} times. Other failures, e.g. mapping
+ * errors, are logged; the task fails once more than
+ * {@link ElasticConstants#MAX_ITEM_FAILURES} documents failed for good.
+ */
+public class ElasticWriter implements NutchIndexWriter {
+
+  public static final Logger LOG = LoggerFactory.getLogger(ElasticWriter.class);
+
+  private static final int DEFAULT_MAX_BULK_DOCS = 500;
+  private static final int DEFAULT_MAX_BULK_LENGTH = 5 * 1024 * 1024;
+  private static final long MAX_BACKOFF_MS = 30000L;
+  static final String BOOST_FIELD = "_boost";
+
+  /** Failures of single items worth retrying. */
+  private static final String[] RETRYABLE = { "EsRejectedExecutionException",
+      "UnavailableShardsException" };
+
+  /** A document and how often it was sent. */
+  private static final class Item {
+    final IndexRequest request;
+    int attempts;
+
+    Item(IndexRequest request) {
+      this.request = request;
+    }
+  }
+
+  private Client client;
+  private Node node;
+  private String index;
+  private String type;
+  private SolrFieldPlan fieldPlan;
+  private final NonCharCodepointStripper stripper = new NonCharCodepointStripper();
+  private boolean indexjs;
+
+  private int maxBulkDocs;
+  private int maxBulkLength;
+  private int maxInFlight;
+  private Semaphore inFlight;
+  private int maxRetries;
+  private long backoffMs;
+  private int maxItemFailures;
+
+  private BulkRequest bulk;
+  private List<Item> items;
+  private int bulkLength;
+
+  /** Items to send again, added by the response listeners. */
+  private final Queue<Item> retries = new ConcurrentLinkedQueue<Item>();
+  private final AtomicLong indexed = new AtomicLong();
+  private final AtomicInteger retried = new AtomicInteger();
+  private final AtomicInteger itemFailures = new AtomicInteger();
+  private final AtomicReference<Throwable> failure =
+    new AtomicReference<Throwable>();
+
+  @Override
+  public void open(TaskAttemptContext job) throws IOException {
+    Configuration conf = job.getConfiguration();
+    fieldPlan = new SolrFieldPlan(SolrMappingReader.getInstance(conf));
+    indexjs = conf.getBoolean("ext.js.indexjs", false);
+    index = conf.get(ElasticConstants.INDEX, "index");
+    type = conf.get(ElasticConstants.TYPE, "doc");
+    maxBulkDocs = conf.getInt(ElasticConstants.MAX_BULK_DOCS, DEFAULT_MAX_BULK_DOCS);
+    maxBulkLength = conf.getInt(ElasticConstants.MAX_BULK_LENGTH,
+        DEFAULT_MAX_BULK_LENGTH);
+    maxInFlight = Math.max(1, conf.getInt(ElasticConstants.MAX_BULK_INFLIGHT, 2));
+    inFlight = new Semaphore(maxInFlight);
+    maxRetries = conf.getInt(ElasticConstants.MAX_RETRIES, 3);
+    backoffMs = conf.getLong(ElasticConstants.RETRY_BACKOFF_MS, 1000L);
+    maxItemFailures = conf.getInt(ElasticConstants.MAX_ITEM_FAILURES, 0);
+    client = connect(conf);
+    newBulk();
+  }
+
+  /**
+   * Connects to the hosts or joins the cluster; tests override this to use
+   * a node in the same JVM.
+   */
+  Client connect(Configuration conf) throws IOException {
+    String cluster = conf.get(ElasticConstants.CLUSTER);
+    String[] hosts = conf.getStrings(ElasticConstants.HOST);
+    ImmutableSettings.Builder settings = ImmutableSettings.settingsBuilder();
+    if (cluster != null) {
+      settings.put("cluster.name", cluster);
+    }
+    if (hosts != null && hosts.length > 0) {
+      int port = conf.getInt(ElasticConstants.PORT, 9300);
+      TransportClient transportClient = new TransportClient(settings);
+      for (String host : hosts) {
+        transportClient.addTransportAddress(new InetSocketTransportAddress(
+            host.trim(), port));
+      }
+      LOG.info("Connected to Elasticsearch at " + conf.get(ElasticConstants.HOST));
+      return transportClient;
+    } else if (cluster != null) {
+      node = NodeBuilder.nodeBuilder().settings(settings).client(true).node();
+      LOG.info("Joined Elasticsearch cluster " + cluster);
+      return node.client();
+    } else {
+      throw new IOException("Neither " + ElasticConstants.HOST + " nor "
+          + ElasticConstants.CLUSTER + " is set");
+    }
+  }
+
+  @Override
+  public void write(NutchDocument doc) throws IOException {
+    checkFailure();
+    String urlValue = doc.getFieldValue("url");
+    if (!indexjs && urlValue != null && urlValue.endsWith(".js")) {
+      LOG.info("CVExtension ignore js file: " + urlValue);
+      return;
+    }
+    String id = doc.getFieldValue(SolrConstants.ID_FIELD);
+    if (id == null) {
+      id = urlValue;
+    }
+    Map<String, Object> source = new HashMap<String, Object>();
+    for (final Entry<String, List<String>> e : doc) {
+      final SolrFieldPlan.Field field = fieldPlan.get(e.getKey());
+      for (final String val : e.getValue()) {
+        final String val2 = field.sanitize ? stripper.strip(val) : val;
+        for (final String target : field.getTargets()) {
+          addValue(source, target, val2);
+        }
+      }
+    }
+    source.put(BOOST_FIELD, doc.getScore());
+    addRetries();
+    add(new Item(new IndexRequest(index, type, id).source(source)));
+  }
+
+  /**
+   * Adds a value to a source field, making it multi-valued if it has a
+   * value already.
+   */
+  @SuppressWarnings("unchecked")
+  private static void addValue(Map<String, Object> source, String name,
+      String value) {
+    Object old = source.get(name);
+    if (old == null) {
+      source.put(name, value);
+    } else if (old instanceof List) {
+      ((List<Object>) old).add(value);
+    } else {
+      List<Object> values = new ArrayList<Object>(4);
+      values.add(old);
+      values.add(value);
+      source.put(name, values);
+    }
+  }
+
+  private void add(Item item) throws IOException {
+    items.add(item);
+    bulk.add(item.request);
+    bulkLength += item.request.underlyingSourceLength();
+    if (items.size() >= maxBulkDocs || bulkLength >= maxBulkLength) {
+      flush();
+    }
+  }
+
+  /** Moves the documents to retry into the current bulk request. */
+  private void addRetries() throws IOException {
+    Item item;
+    while ((item = retries.poll()) != null) {
+      add(item);
+    }
+  }
+
+  private void newBulk() {
+    bulk = new BulkRequest();
+    items = new ArrayList<Item>(Math.min(maxBulkDocs, 1024));
+    bulkLength = 0;
+  }
+
+  /**
+   * Sends the current bulk request in the background, waiting while the
+   * maximum number of requests is in flight.
+   */
+  private void flush() throws IOException {
+    if (items.isEmpty()) {
+      return;
+    }
+    final List<Item> sent = items;
+    BulkRequest request = bulk;
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Sending " + sent.size() + " documents, " + bulkLength
+          + " bytes");
+    }
+    newBulk();
+    try {
+      inFlight.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for Elasticsearch");
+    }
+    final ActionListener<BulkResponse> listener = new ActionListener<BulkResponse>() {
+      public void onResponse(BulkResponse response) {
+        try {
+          for (BulkItemResponse itemResponse : response) {
+            if (itemResponse.isFailed()) {
+              failed(sent.get(itemResponse.itemId()),
+                  itemResponse.getFailureMessage(), isRetryable(itemResponse
+                      .getFailureMessage()));
+            } else {
+              indexed.incrementAndGet();
+            }
+          }
+        } finally {
+          inFlight.release();
+        }
+      }
+
+      public void onFailure(Throwable e) {
+        try {
+          LOG.warn("Bulk request of " + sent.size() + " documents failed", e);
+          for (Item item : sent) {
+            failed(item, String.valueOf(e), true);
+          }
+        } finally {
+          inFlight.release();
+        }
+      }
+    };
+    try {
+      client.bulk(request, listener);
+    } catch (RuntimeException e) {
+      // thrown before the request was sent, e.g. when no node is available
+      listener.onFailure(e);
+    }
+  }
+
+  private static boolean isRetryable(String message) {
+    if (message != null) {
+      for (String retryable : RETRYABLE) {
+        if (message.contains(retryable)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /** Called by the response listeners for every document that failed. */
+  private void failed(Item item, String message, boolean retryable) {
+    if (retryable && item.attempts < maxRetries) {
+      item.attempts++;
+      retried.incrementAndGet();
+      retries.add(item);
+      return;
+    }
+    LOG.warn("Failed to index " + item.request.id() + ": " + message);
+    if (itemFailures.incrementAndGet() > maxItemFailures && maxItemFailures >= 0) {
+      failure.compareAndSet(null, new IOException("More than "
+          + maxItemFailures + " documents failed, last " + item.request.id()
+          + ": " + message));
+    }
+  }
+
+  private void checkFailure() throws IOException {
+    Throwable t = failure.get();
+    if (t instanceof IOException) {
+      throw (IOException) t;
+    } else if (t != null) {
+      throw new IOException(t);
+    }
+  }
+
+  /** Waits until no bulk request is in flight. */
+  private void awaitInFlight() throws IOException {
+    try {
+      inFlight.acquire(maxInFlight);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for Elasticsearch");
+    }
+    inFlight.release(maxInFlight);
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      // documents failing in the last requests are retried here, with
+      // growing pauses since nothing else is sent meanwhile
+      long backoff = backoffMs;
+      while (true) {
+        flush();
+        awaitInFlight();
+        if (retries.isEmpty() || failure.get() != null) {
+          break;
+        }
+        try {
+          Thread.sleep(backoff);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while retrying");
+        }
+        backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+        addRetries();
+      }
+      LOG.info("Indexed " + indexed.get() + " documents, " + retried.get()
+          + " retries, " + itemFailures.get() + " failed");
+      checkFailure();
+    } finally {
+      client.close();
+      if (node != null) {
+        node.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.indexer.solr;
+
+/**
+ * Strips code points Solr cannot index: all non-characters
+ * (http://unicode.org/cldr/utility/list-unicodeset.jsp?a=[:Noncharacter_Code_Point=True:]),
+ * including the supplementary ones encoded as surrogate pairs, unpaired
+ * surrogates and control characters except tabulator, new line and carriage
+ * return.
+ *
+ * Strings without such code points are returned as they are. Otherwise the
+ * kept runs are copied in bulk into a buffer that is reused across calls, so
+ * an instance must not be shared between threads. Inputs longer than
+ * {@link #MAX_RETAINED} chars get a buffer of their own, so one large
+ * document does not pin its size for the life of the stripper.
+ */
+public class NonCharCodepointStripper {
+
+  /** Length up to which the buffer is kept for the next call. */
+  static final int MAX_RETAINED = 64 * 1024;
+
+  private char[] buffer = new char[0];
+
+  public String strip(String input) {
+    int len = input.length();
+    int i = indexOfStrippable(input, 0);
+    if (i == len) {
+      return input;
+    }
+    char[] buffer = this.buffer;
+    if (buffer.length < len) {
+      buffer = new char[len];
+      if (len <= MAX_RETAINED) {
+        this.buffer = buffer;
+      }
+    }
+    input.getChars(0, i, buffer, 0);
+    int pos = i;
+    while (i < len) {
+      i += strippableLength(input, i);
+      int next = indexOfStrippable(input, i);
+      input.getChars(i, next, buffer, pos);
+      pos += next - i;
+      i = next;
+    }
+    return new String(buffer, 0, pos);
+  }
+
+  /** @return the length of the buffer kept between calls */
+  int getRetainedLength() {
+    return buffer.length;
+  }
+
+  /**
+   * @return the index of the first char to strip at or after
+   *         <code>from</code>, or the length of the string
+   */
+  static int indexOfStrippable(String s, int from) {
+    int len = s.length();
+    for (int i = from; i < len; i++) {
+      char ch = s.charAt(i);
+      // nearly all text is in this range, keep the test cheap
+      if (ch >= 0x20 && ch < 0xd800) {
+        continue;
+      }
+      if (strippableLength(s, i) != 0) {
+        return i;
+      }
+      if (Character.isHighSurrogate(ch)) {
+        // a valid pair, skip the low surrogate
+        i++;
+      }
+    }
+    return len;
+  }
+
+  /**
+   * @return 0 if the code point starting at <code>i</code> is kept,
+   *         otherwise the number of chars (1 or 2) to strip
+   */
+  static int strippableLength(String s, int i) {
+    char ch = s.charAt(i);
+    if (ch < 0x20) {
+      return ch == 0x9 || ch == 0xa || ch == 0xd ? 0 : 1;
+    }
+    if (ch < 0xd800) {
+      return 0;
+    }
+    if (Character.isHighSurrogate(ch)) {
+      if (i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+        int cp = Character.toCodePoint(ch, s.charAt(i + 1));
+        // 0x1fffe - 0x10ffff range step 0x10000
+        return (cp & 0xfffe) == 0xfffe ? 2 : 0;
+      }
+      return 1;
+    }
+    if (Character.isLowSurrogate(ch)) {
+      return 1;
+    }
+    // 0xfdd0 - 0xfdef, 0xfffe and 0xffff
+    return (ch >= 0xfdd0 && ch <= 0xfdef) || ch >= 0xfffe ? 1 : 0;
+  }
+}
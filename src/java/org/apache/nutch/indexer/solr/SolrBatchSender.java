@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.indexer.solr;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends batches of documents to Solr. Without sender threads every batch is
+ * sent inline; otherwise batches go to a bounded queue drained by background
+ * threads, so the indexing task keeps converting documents while earlier
+ * batches are in flight and blocks only when the queue is full.
+ *
+ * Failed requests are retried with jittered exponential backoff, and a
+ * {@link SolrCircuitBreaker} pauses all requests while Solr keeps failing.
+ * A batch Solr rejects as bad (400) or too large (413), or that still fails
+ * while Solr otherwise works, is split in half until the offending
+ * documents are isolated; those go to the {@link SolrDeadLetterLog} if there
+ * is one, otherwise the task fails. Other client errors, such as 401, 403
+ * or 404, fail the writer at once.
+ */
+class SolrBatchSender {
+
+  public static final Logger LOG = LoggerFactory.getLogger(SolrBatchSender.class);
+
+  /** Marks the end of the queue for one sender thread. */
+  private static final List<SolrInputDocument> END_OF_QUEUE =
+    new ArrayList<SolrInputDocument>(0);
+
+  private final SolrServer solr;
+  private final ModifiableSolrParams params;
+  private final SolrCircuitBreaker breaker;
+  private final SolrDeadLetterLog deadLetters;
+  private final SolrWriterMetrics metrics;
+  private final int maxRetries;
+  private final long backoffMs;
+  private final long maxBackoffMs;
+  private final Random random = new Random();
+  private final BlockingQueue<List<SolrInputDocument>> queue;
+  private final Thread[] senders;
+  private final AtomicReference<Throwable> failure =
+    new AtomicReference<Throwable>();
+
+  /**
+   * @param deadLetters
+   *          where rejected documents go, or null to fail instead
+   * @param metrics
+   *          where requests, retries and failures are counted
+   * @param defaultThreads
+   *          sender threads if {@link SolrConstants#WRITER_THREADS} is not set
+   */
+  SolrBatchSender(SolrServer solr, ModifiableSolrParams params,
+      Configuration conf, SolrDeadLetterLog deadLetters,
+      SolrWriterMetrics metrics, int defaultThreads) {
+    this.solr = solr;
+    this.params = params;
+    this.deadLetters = deadLetters;
+    this.metrics = metrics;
+    this.maxRetries = conf.getInt(SolrConstants.WRITER_RETRIES, 3);
+    this.backoffMs = conf.getLong(SolrConstants.WRITER_BACKOFF_MS, 1000L);
+    this.maxBackoffMs = conf.getLong(SolrConstants.WRITER_BACKOFF_MAX_MS, 30000L);
+    this.breaker = new SolrCircuitBreaker(
+        conf.getInt(SolrConstants.WRITER_BREAKER_WINDOW, 20),
+        conf.getFloat(SolrConstants.WRITER_BREAKER_FAILURE_RATIO, 0.5f),
+        conf.getLong(SolrConstants.WRITER_BREAKER_OPEN_MS, 30000L));
+
+    int threads = conf.getInt(SolrConstants.WRITER_THREADS, defaultThreads);
+    int queueSize = conf.getInt(SolrConstants.WRITER_QUEUE_SIZE, threads);
+    if (threads <= 0) {
+      queue = null;
+      senders = null;
+      return;
+    }
+    queue = new ArrayBlockingQueue<List<SolrInputDocument>>(Math.max(1, queueSize));
+    senders = new Thread[threads];
+    for (int i = 0; i < threads; i++) {
+      senders[i] = new Thread(new Runnable() {
+        public void run() {
+          drain();
+        }
+      }, "SolrBatchSender-" + i);
+      senders[i].setDaemon(true);
+      senders[i].start();
+    }
+  }
+
+  /**
+   * Sends a batch, or queues it if sender threads are running. The caller
+   * must not modify the batch afterwards.
+   *
+   * @throws IOException if this or an earlier batch could not be sent
+   */
+  public void send(List<SolrInputDocument> batch) throws IOException {
+    checkFailure();
+    if (senders == null) {
+      process(batch);
+      return;
+    }
+    try {
+      queue.put(batch);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while queueing batch");
+    }
+  }
+
+  /**
+   * Waits until all queued batches are sent and stops the sender threads.
+   *
+   * @throws IOException with the first failure seen by any sender thread
+   */
+  public void close() throws IOException {
+    if (senders != null) {
+      try {
+        for (int i = 0; i < senders.length; i++) {
+          queue.put(END_OF_QUEUE);
+        }
+        for (Thread sender : senders) {
+          sender.join();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while draining batches");
+      }
+    }
+    checkFailure();
+  }
+
+  private void drain() {
+    while (true) {
+      List<SolrInputDocument> batch;
+      try {
+        batch = queue.take();
+      } catch (InterruptedException e) {
+        failure.compareAndSet(null, e);
+        return;
+      }
+      if (batch == END_OF_QUEUE) {
+        return;
+      }
+      // after a failure keep taking batches so the writer never blocks on a
+      // full queue, but do not send them: the task is going to fail anyway
+      if (failure.get() != null) {
+        continue;
+      }
+      try {
+        process(batch);
+      } catch (Throwable t) {
+        LOG.error("Failed to send " + batch.size() + " documents", t);
+        failure.compareAndSet(null, t);
+      }
+    }
+  }
+
+  private void process(List<SolrInputDocument> batch) throws IOException {
+    LOG.info("Adding " + Integer.toString(batch.size()) + " documents, params: " + params);
+    int attempt = 0;
+    while (true) {
+      breaker.awaitClosed();
+      long start = System.nanoTime();
+      try {
+        UpdateRequest req = new UpdateRequest();
+        req.add(batch);
+        req.setParams(params);
+        req.process(solr);
+        metrics.recordRequest(System.nanoTime() - start);
+        breaker.recordSuccess();
+        return;
+      } catch (Exception e) {
+        metrics.recordFailedRequest(System.nanoTime() - start);
+        if (isRefused(e)) {
+          // every document would fail the same way, e.g. a wrong URL
+          throw new IOException("Solr refused the update request, check "
+              + "the server URL and credentials", e);
+        }
+        boolean rejected = isRejected(e);
+        if (rejected) {
+          // Solr is up and answering, only this request is bad
+          breaker.recordSuccess();
+        } else {
+          breaker.recordFailure();
+        }
+        if (!rejected && attempt < maxRetries) {
+          long backoff = backoff(attempt++);
+          metrics.increment(SolrWriterMetrics.Counter.RETRIES);
+          LOG.warn("Failed to add " + batch.size() + " documents (" + e
+              + "), retry " + attempt + " in " + backoff + " ms");
+          sleep(backoff);
+          continue;
+        }
+        if (!rejected && !breaker.isHealthy()) {
+          // Solr itself is failing, splitting would not help
+          throw new IOException(e);
+        }
+        if (batch.size() > 1) {
+          int half = batch.size() / 2;
+          LOG.warn("Failed to add " + batch.size() + " documents (" + e
+              + "), splitting the batch");
+          process(batch.subList(0, half));
+          process(batch.subList(half, batch.size()));
+          return;
+        }
+        if (deadLetters == null) {
+          throw new IOException(e);
+        }
+        deadLetters.add(batch.get(0), e);
+        metrics.increment(SolrWriterMetrics.Counter.DEAD_LETTERS);
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return true if Solr answered that the documents of the request are
+   *         bad, or too large together, so sending them again as they are
+   *         cannot succeed but smaller batches may
+   */
+  private static boolean isRejected(Exception e) {
+    int code = code(e);
+    return code == 400 || code == 413;
+  }
+
+  /**
+   * @return true if the server refused the request whatever it contains,
+   *         e.g. 401, 403 or 404
+   */
+  private static boolean isRefused(Exception e) {
+    int code = code(e);
+    return code >= 400 && code < 500 && !isRejected(e);
+  }
+
+  private static int code(Exception e) {
+    return e instanceof SolrException ? ((SolrException) e).code() : 0;
+  }
+
+  /** Exponential backoff with equal jitter. */
+  private long backoff(int attempt) {
+    long max = Math.min(maxBackoffMs, backoffMs << Math.min(attempt, 20));
+    long half = max / 2;
+    synchronized (random) {
+      return half + (long) (random.nextDouble() * (max - half));
+    }
+  }
+
+  private static void sleep(long ms) throws InterruptedIOException {
+    try {
+      Thread.sleep(ms);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while backing off");
+    }
+  }
+
+  private void checkFailure() throws IOException {
+    Throwable t = failure.get();
+    if (t != null) {
+      throw new IOException(t);
+    }
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.indexer.solr;
+
+import java.io.InterruptedIOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pauses all requests to a Solr server while it is failing. The breaker
+ * opens when the failure ratio over the last requests reaches a threshold,
+ * keeps requests waiting for a while, then lets one request through while
+ * the others keep waiting: if it succeeds requests flow again, otherwise
+ * the breaker opens again. Failures stay in the window until a request
+ * succeeds after the pause.
+ */
+class SolrCircuitBreaker {
+
+  public static final Logger LOG = LoggerFactory.getLogger(SolrCircuitBreaker.class);
+
+  private final boolean[] failed;
+  private final double failureRatio;
+  private final long openMs;
+
+  private int next;
+  private int count;
+  private int failures;
+  private long openUntil;
+  /** Set from opening until a request succeeds again. */
+  private boolean probing;
+  /** Thread whose request decides whether the breaker closes, or null. */
+  private Thread probe;
+
+  /**
+   * @param window
+   *          number of recent requests the failure ratio is computed over
+   * @param failureRatio
+   *          ratio of failed requests at which the breaker opens
+   * @param openMs
+   *          how long requests are paused once the breaker opened
+   */
+  SolrCircuitBreaker(int window, double failureRatio, long openMs) {
+    this.failed = new boolean[Math.max(1, window)];
+    this.failureRatio = failureRatio;
+    this.openMs = openMs;
+  }
+
+  /**
+   * Blocks while the breaker is open, and after the pause while another
+   * request probes whether Solr works again. The first request let through
+   * after the pause is the probe; it must be followed by
+   * {@link #recordSuccess()} or {@link #recordFailure()} on the same thread.
+   */
+  public synchronized void awaitClosed() throws InterruptedIOException {
+    try {
+      while (true) {
+        long wait = openUntil - System.currentTimeMillis();
+        if (wait > 0) {
+          wait(wait);
+        } else if (!probing) {
+          return;
+        } else if (probe == null) {
+          probe = Thread.currentThread();
+          return;
+        } else {
+          wait();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while Solr requests are paused");
+    }
+  }
+
+  public synchronized void recordSuccess() {
+    endProbe();
+    if (probing) {
+      LOG.info("Solr answers again, resuming requests");
+      probing = false;
+      // the failures before the pause say nothing about Solr now
+      count = 0;
+      failures = 0;
+      next = 0;
+      notifyAll();
+    }
+    record(false);
+  }
+
+  public synchronized void recordFailure() {
+    endProbe();
+    record(true);
+    if (probing || (count == failed.length && failures >= failureRatio * count)) {
+      open();
+    }
+  }
+
+  /**
+   * @return true if the breaker is closed and recent requests mostly
+   *         succeeded, i.e. a failure is more likely caused by the request
+   *         than by the server
+   */
+  public synchronized boolean isHealthy() {
+    return !probing && failures < failureRatio * Math.max(1, count);
+  }
+
+  private void endProbe() {
+    if (probe == Thread.currentThread()) {
+      probe = null;
+    }
+  }
+
+  private void record(boolean failure) {
+    if (count == failed.length) {
+      if (failed[next]) {
+        failures--;
+      }
+    } else {
+      count++;
+    }
+    failed[next] = failure;
+    if (failure) {
+      failures++;
+    }
+    next = (next + 1) % failed.length;
+  }
+
+  private void open() {
+    LOG.warn("Solr failed " + failures + " of the last " + count
+        + " requests, pausing requests for " + openMs + " ms");
+    openUntil = System.currentTimeMillis() + openMs;
+    // the first request after the pause decides whether to open again
+    probing = true;
+    // waiters for a failed probe wait for the new pause
+    notifyAll();
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.indexer.solr;
+
+public interface SolrConstants {
+  public static final String SOLR_PREFIX = "solr.";
+
+  public static final String SERVER_URL = SOLR_PREFIX + "server.url";
+
+  /**
+   * Comma separated URLs of Solr cores to spread documents over by a
+   * consistent hash of their id. Takes precedence over {@link #SERVER_URL}.
+   */
+  public static final String SERVER_URLS = SOLR_PREFIX + "server.urls";
+
+  public static final String COMMIT_SIZE = SOLR_PREFIX + "commit.size";
+
+  /**
+   * Estimated serialized size in bytes after which a batch is sent, whichever
+   * of this and {@link #COMMIT_SIZE} is reached first. Defaults to 10485760
+   * bytes (10 MB); 0 disables the limit.
+   */
+  public static final String COMMIT_BYTES = SOLR_PREFIX + "commit.bytes";
+
+  /**
+   * Time in milliseconds after which a batch is sent when the next document
+   * arrives. Only checked as documents arrive: without new documents a batch
+   * waits until the writer is closed. 0 (the default) disables it.
+   */
+  public static final String COMMIT_LINGER_MS = SOLR_PREFIX + "commit.linger.ms";
+
+  public static final String MAPPING_FILE = SOLR_PREFIX + "mapping.file";
+
+  public static final String USE_AUTH = SOLR_PREFIX + "auth";
+
+  public static final String USERNAME = SOLR_PREFIX + "auth.username";
+
+  public static final String PASSWORD = SOLR_PREFIX + "auth.password";
+
+  /**
+   * Number of background threads sending batches to each Solr core. With 0
+   * batches are sent inline by the indexing task. Defaults to 0 for a single
+   * core and to 1 with {@link #SERVER_URLS}.
+   */
+  public static final String WRITER_THREADS = SOLR_PREFIX + "writer.threads";
+
+  /**
+   * Number of full batches that may wait for a sender thread before
+   * {@link SolrWriter#write} blocks. Defaults to the number of threads.
+   */
+  public static final String WRITER_QUEUE_SIZE = SOLR_PREFIX + "writer.queue.size";
+
+  /** How often a failed request is retried before giving up. Defaults to 3. */
+  public static final String WRITER_RETRIES = SOLR_PREFIX + "writer.retries";
+
+  /**
+   * Backoff before the first retry in milliseconds, doubled for every further
+   * retry and jittered. Defaults to 1000.
+   */
+  public static final String WRITER_BACKOFF_MS = SOLR_PREFIX + "writer.backoff.ms";
+
+  /** Upper bound of the retry backoff in milliseconds. Defaults to 30000. */
+  public static final String WRITER_BACKOFF_MAX_MS = SOLR_PREFIX + "writer.backoff.max.ms";
+
+  /** Number of recent requests the circuit breaker looks at. Defaults to 20. */
+  public static final String WRITER_BREAKER_WINDOW = SOLR_PREFIX + "writer.breaker.window";
+
+  /**
+   * Ratio of failed recent requests at which all requests are paused.
+   * Defaults to 0.5.
+   */
+  public static final String WRITER_BREAKER_FAILURE_RATIO = SOLR_PREFIX + "writer.breaker.failure.ratio";
+
+  /** How long requests are paused, in milliseconds. Defaults to 30000. */
+  public static final String WRITER_BREAKER_OPEN_MS = SOLR_PREFIX + "writer.breaker.open.ms";
+
+  /**
+   * Local directory where documents Solr rejects are written, one file per
+   * task attempt. If unset, a rejected document fails the task.
+   */
+  public static final String WRITER_DEADLETTER_DIR = SOLR_PREFIX + "writer.deadletter.dir";
+
+  /**
+   * If true, documents are streamed to the XML update handler as they are
+   * written instead of being collected into batches; {@link #COMMIT_SIZE}
+   * and {@link #COMMIT_BYTES} then bound each request.
+   */
+  public static final String WRITER_STREAMING = SOLR_PREFIX + "writer.streaming";
+
+  /**
+   * Number of documents that may wait for the streaming thread before
+   * {@link SolrWriter#write} blocks. Defaults to 100.
+   */
+  public static final String WRITER_STREAMING_QUEUE_SIZE = SOLR_PREFIX + "writer.streaming.queue.size";
+
+  /** Maximum number of pooled connections per Solr core. Defaults to 128. */
+  public static final String HTTP_MAX_CONNECTIONS = SOLR_PREFIX + "http.max.connections";
+
+  /** Maximum number of pooled connections per host. Defaults to 32. */
+  public static final String HTTP_MAX_CONNECTIONS_PER_HOST = SOLR_PREFIX + "http.max.connections.per.host";
+
+  /** Connection timeout in milliseconds. Defaults to 10000. */
+  public static final String HTTP_CONNECTION_TIMEOUT = SOLR_PREFIX + "http.connection.timeout";
+
+  /** Socket read timeout in milliseconds. Defaults to 300000. */
+  public static final String HTTP_SOCKET_TIMEOUT = SOLR_PREFIX + "http.socket.timeout";
+
+  /** If true (the default), gzip compressed responses are requested. */
+  public static final String HTTP_COMPRESSION = SOLR_PREFIX + "http.compression";
+
+  /**
+   * If true, updates are sent in the javabin format instead of XML. The
+   * Solr cores need the /update/javabin request handler. Defaults to false.
+   */
+  public static final String HTTP_JAVABIN = SOLR_PREFIX + "http.javabin";
+
+  /**
+   * Directory, on any Hadoop file system, keeping hashes of the indexed
+   * documents. If set, documents unchanged since the last index run are not
+   * sent to Solr again.
+   */
+  public static final String DEDUP_DIR = SOLR_PREFIX + "dedup.dir";
+
+  /** Fields not hashed to detect changes. Defaults to tstamp. */
+  public static final String DEDUP_IGNORE_FIELDS = SOLR_PREFIX + "dedup.ignore.fields";
+
+  /**
+   * Local directory for a properties file per task with the writer
+   * metrics, rewritten at every report. Not written if unset.
+   */
+  public static final String METRICS_DIR = SOLR_PREFIX + "metrics.dir";
+
+  /** Milliseconds between writer metrics reports. Defaults to 30000. */
+  public static final String METRICS_INTERVAL_MS = SOLR_PREFIX + "metrics.interval.ms";
+
+  public static final String ID_FIELD = "id";
+
+  public static final String URL_FIELD = "url";
+
+  public static final String BOOST_FIELD = "boost";
+
+  public static final String TIMESTAMP_FIELD = "tstamp";
+
+  public static final String DIGEST_FIELD = "digest";
+}
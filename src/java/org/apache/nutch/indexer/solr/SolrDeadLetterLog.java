@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.indexer.solr;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.apache.solr.client.solrj.util.ClientUtils;
+import org.apache.solr.common.SolrInputDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local file collecting documents Solr rejected as
+ * <code>&lt;doc&gt;</code> elements, each preceded by a comment with the
+ * error, so they can be inspected and re-posted. The file is created when
+ * the first document is added.
+ */
+class SolrDeadLetterLog {
+
+  public static final Logger LOG = LoggerFactory.getLogger(SolrDeadLetterLog.class);
+
+  private final File file;
+  private Writer writer;
+  private int count;
+
+  SolrDeadLetterLog(File file) {
+    this.file = file;
+  }
+
+  public synchronized void add(SolrInputDocument doc, Throwable cause)
+      throws IOException {
+    if (writer == null) {
+      File dir = file.getParentFile();
+      if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+        throw new IOException("Cannot create " + dir);
+      }
+      writer = new BufferedWriter(new OutputStreamWriter(
+          new FileOutputStream(file, true), "UTF-8"));
+    }
+    writer.write("<!-- ");
+    writer.write(String.valueOf(cause).replace("--", "- -").replace('\n', ' '));
+    writer.write(" -->\n");
+    writer.write(ClientUtils.toXML(doc));
+    writer.write('\n');
+    writer.flush();
+    count++;
+  }
+
+  /** @return the number of documents added so far */
+  public synchronized int getCount() {
+    return count;
+  }
+
+  public synchronized void close() throws IOException {
+    if (writer != null) {
+      LOG.warn(count + " rejected documents written to " + file);
+      writer.close();
+      writer = null;
+    }
+  }
+}
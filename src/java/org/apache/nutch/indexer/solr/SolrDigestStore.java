@@ -0,0 +1,311 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.indexer.solr;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocalFileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.nutch.indexer.NutchDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Remembers a hash of every indexed document so documents that did not
+ * change since the last index run need not be sent to Solr again.
+ *
+ * Every index job writes a generation directory named after its job id
+ * below {@link SolrConstants#DEDUP_DIR}, holding one file per task with the
+ * sorted (url hash, content hash) pairs of the documents the task saw,
+ * named after the task's type and index. A task looks documents up in the
+ * file of the task with the same type and index in the most recent
+ * generation of an earlier job, memory-mapping it; as long as the input is
+ * split the same way that task saw the same documents. A document missing
+ * from it is always sent, so a lost or partial generation, or documents
+ * that moved to another task, only cost updates. The directory must be
+ * removed when the Solr index is rebuilt or documents are deleted from it.
+ *
+ * Not thread-safe.
+ */
+class SolrDigestStore {
+
+  public static final Logger LOG = LoggerFactory.getLogger(SolrDigestStore.class);
+
+  private static final HashFunction HASH = Hashing.murmur3_128();
+  private static final String PART_PREFIX = "part-";
+
+  private final FileSystem fs;
+  private final Path dir;
+  private final Path generation;
+  private final Path previous;
+  private final Path part;
+  private final Path tmpPart;
+  private final Set<String> ignoredFields;
+
+  private LongBuffer previousPart;
+  private File localCopy;
+
+  /** (url hash, content hash) pairs of the documents seen by this task. */
+  private long[] seen = new long[2048];
+  private int seenLength;
+  private long unchanged;
+
+  SolrDigestStore(Configuration conf, Path dir, TaskAttemptID attempt)
+      throws IOException {
+    this.fs = dir.getFileSystem(conf);
+    this.dir = dir;
+    this.generation = new Path(dir, attempt.getJobID().toString());
+    String partName = String.format("%s%s-%05d", PART_PREFIX,
+        attempt.getTaskID().isMap() ? "m" : "r", attempt.getTaskID().getId());
+    this.part = new Path(generation, partName);
+    this.tmpPart = new Path(generation, "_" + attempt);
+    this.ignoredFields = new HashSet<String>();
+    String[] ignored = conf.getStrings(SolrConstants.DEDUP_IGNORE_FIELDS, "tstamp");
+    for (String field : ignored) {
+      ignoredFields.add(field.trim());
+    }
+
+    previous = findPrevious();
+    if (previous != null) {
+      Path previousPath = new Path(previous, partName);
+      if (fs.exists(previousPath)) {
+        previousPart = map(previousPath);
+        LOG.info("Skipping documents unchanged since " + previousPath);
+      }
+    }
+  }
+
+  /**
+   * Records the document and checks it against the previous generation.
+   *
+   * @param key
+   *          stable document key, i.e. its id
+   * @return true if the previous generation has the same content hash for
+   *         the key
+   */
+  public boolean isUnchanged(String key, NutchDocument doc) {
+    long keyHash = HASH.newHasher().putString(key).hash().asLong();
+    long contentHash = contentHash(doc);
+    if (seenLength == seen.length) {
+      long[] grown = new long[seen.length * 2];
+      System.arraycopy(seen, 0, grown, 0, seenLength);
+      seen = grown;
+    }
+    seen[seenLength++] = keyHash;
+    seen[seenLength++] = contentHash;
+
+    if (previousPart != null) {
+      int i = find(previousPart, keyHash);
+      if (i >= 0 && previousPart.get(2 * i + 1) == contentHash) {
+        unchanged++;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Hashes all fields but the ignored ones, independent of their order,
+   * and the boost.
+   */
+  private long contentHash(NutchDocument doc) {
+    long hash = 0;
+    for (Entry<String, List<String>> e : doc) {
+      if (ignoredFields.contains(e.getKey())) {
+        continue;
+      }
+      Hasher hasher = HASH.newHasher().putString(e.getKey());
+      for (String value : e.getValue()) {
+        hasher.putInt(value.length()).putString(value);
+      }
+      hash += hasher.hash().asLong();
+    }
+    return hash * 31 + Float.floatToIntBits(doc.getScore());
+  }
+
+  /**
+   * Writes the documents seen by this task to the new generation and
+   * removes generations older than the previous one. Call only once all
+   * documents made it into Solr.
+   */
+  public void commit() throws IOException {
+    sort(seen, 0, seenLength / 2 - 1);
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        fs.create(tmpPart, true), 64 * 1024));
+    try {
+      for (int i = 0; i < seenLength; i++) {
+        out.writeLong(seen[i]);
+      }
+    } finally {
+      out.close();
+    }
+    // a speculative attempt of the same task may have won already
+    if (!fs.rename(tmpPart, part)) {
+      fs.delete(tmpPart, false);
+    }
+    LOG.info(unchanged + " of " + seenLength / 2
+        + " documents unchanged, digests written to " + part);
+
+    if (previous != null) {
+      long previousTime = fs.getFileStatus(previous).getModificationTime();
+      for (FileStatus st : fs.listStatus(dir)) {
+        if (st.isDir() && st.getModificationTime() < previousTime) {
+          fs.delete(st.getPath(), true);
+        }
+      }
+    }
+    close();
+  }
+
+  /** Drops the documents seen by this task. */
+  public void abort() {
+    LOG.warn("Not all documents were indexed, not writing digests");
+    close();
+  }
+
+  private void close() {
+    previousPart = null;
+    if (localCopy != null) {
+      localCopy.delete();
+      localCopy = null;
+    }
+  }
+
+  public long getUnchanged() {
+    return unchanged;
+  }
+
+  /** @return the newest generation directory of another job */
+  private Path findPrevious() throws IOException {
+    if (!fs.exists(dir)) {
+      return null;
+    }
+    Path newest = null;
+    long newestTime = Long.MIN_VALUE;
+    for (FileStatus st : fs.listStatus(dir)) {
+      if (st.isDir() && !st.getPath().getName().equals(generation.getName())
+          && st.getModificationTime() > newestTime) {
+        newest = st.getPath();
+        newestTime = st.getModificationTime();
+      }
+    }
+    return newest;
+  }
+
+  /** Maps a part file, copying it to the local disk first if needed. */
+  private LongBuffer map(Path path) throws IOException {
+    File file;
+    if (fs instanceof LocalFileSystem) {
+      file = ((LocalFileSystem) fs).pathToFile(path);
+    } else {
+      file = File.createTempFile("solr-digests-", ".bin");
+      localCopy = file;
+      InputStream in = fs.open(path);
+      OutputStream out = new FileOutputStream(file);
+      IOUtils.copyBytes(in, out, 64 * 1024, true);
+    }
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException(path + " is too large to be mapped");
+      }
+      // the mapping stays valid after the channel is closed
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+          .asLongBuffer();
+    } finally {
+      raf.close();
+    }
+  }
+
+  /** Binary search over the keys of sorted pairs; returns the pair index. */
+  static int find(LongBuffer pairs, long key) {
+    int lo = 0;
+    int hi = pairs.limit() / 2 - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      long k = pairs.get(2 * mid);
+      if (k < key) {
+        lo = mid + 1;
+      } else if (k > key) {
+        hi = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  /** Sorts the pairs lo..hi (inclusive pair indexes) by key. */
+  static void sort(long[] pairs, int lo, int hi) {
+    while (lo < hi) {
+      long pivot = pairs[2 * ((lo + hi) >>> 1)];
+      int i = lo;
+      int j = hi;
+      while (i <= j) {
+        while (pairs[2 * i] < pivot) {
+          i++;
+        }
+        while (pairs[2 * j] > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          swap(pairs, i++, j--);
+        }
+      }
+      // recurse into the smaller half to bound the stack depth
+      if (j - lo < hi - i) {
+        sort(pairs, lo, j);
+        lo = i;
+      } else {
+        sort(pairs, i, hi);
+        hi = j;
+      }
+    }
+  }
+
+  private static void swap(long[] pairs, int a, int b) {
+    long key = pairs[2 * a];
+    long value = pairs[2 * a + 1];
+    pairs[2 * a] = pairs[2 * b];
+    pairs[2 * a + 1] = pairs[2 * b + 1];
+    pairs[2 * b] = key;
+    pairs[2 * b + 1] = value;
+  }
+}
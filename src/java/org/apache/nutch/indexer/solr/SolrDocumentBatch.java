@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.indexer.solr;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.solr.common.SolrInputDocument;
+
+/**
+ * Documents waiting to be sent to Solr, together with an estimate of their
+ * serialized size. The batch is full once it reaches the document limit,
+ * the byte budget or, if set, the linger time of its first document.
+ *
+ * The linger time is only checked by {@link #isFull()}, which the writer
+ * calls when it adds a document; nothing flushes a batch on a timer. While
+ * no documents arrive a batch keeps waiting, for the next document or for
+ * the writer to be closed, however long its first document waited.
+ */
+class SolrDocumentBatch {
+
+  /** Approximate markup around a field value: &lt;field name=""&gt;&lt;/field&gt; */
+  private static final int FIELD_OVERHEAD = 24;
+
+  /** Approximate markup around a document: &lt;doc boost=""&gt;&lt;/doc&gt; */
+  private static final int DOC_OVERHEAD = 24;
+
+  private final int maxDocs;
+  private final long maxBytes;
+  private final long maxLingerMs;
+
+  private List<SolrInputDocument> docs = new ArrayList<SolrInputDocument>();
+  private long bytes;
+  private long firstAddTime;
+
+  /**
+   * @param maxDocs
+   *          flush after this many documents
+   * @param maxBytes
+   *          flush once the estimated size reaches this many bytes, or never
+   *          if &lt;= 0
+   * @param maxLingerMs
+   *          flush once the oldest document waited this long when the next
+   *          one is added, or never if &lt;= 0
+   */
+  SolrDocumentBatch(int maxDocs, long maxBytes, long maxLingerMs) {
+    this.maxDocs = maxDocs;
+    this.maxBytes = maxBytes;
+    this.maxLingerMs = maxLingerMs;
+  }
+
+  /**
+   * Estimates the serialized size of one field value. Characters are
+   * counted as bytes, which is exact for ASCII and close enough for a
+   * flush threshold otherwise.
+   */
+  static long estimateSize(String name, String value) {
+    return name.length() + value.length() + FIELD_OVERHEAD;
+  }
+
+  /**
+   * @param estimatedBytes
+   *          sum of {@link #estimateSize(String, String)} over the fields of
+   *          the document
+   */
+  public void add(SolrInputDocument doc, long estimatedBytes) {
+    if (docs.isEmpty()) {
+      firstAddTime = System.currentTimeMillis();
+    }
+    docs.add(doc);
+    bytes += estimatedBytes + DOC_OVERHEAD;
+  }
+
+  public boolean isFull() {
+    if (docs.size() >= maxDocs) {
+      return true;
+    }
+    if (maxBytes > 0 && bytes >= maxBytes) {
+      return true;
+    }
+    return maxLingerMs > 0 && !docs.isEmpty()
+        && System.currentTimeMillis() - firstAddTime >= maxLingerMs;
+  }
+
+  public boolean isEmpty() {
+    return docs.isEmpty();
+  }
+
+  public int size() {
+    return docs.size();
+  }
+
+  /** Estimated serialized size of the documents in bytes. */
+  public long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Returns the documents and starts a new, empty batch. The returned list
+   * is no longer referenced by this batch.
+   */
+  public List<SolrInputDocument> drain() {
+    List<SolrInputDocument> drained = docs;
+    docs = new ArrayList<SolrInputDocument>();
+    bytes = 0;
+    return drained;
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.indexer.solr;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches how each {@link org.apache.nutch.indexer.NutchDocument} field is
+ * written to Solr, or to Elasticsearch with the same mapping, so that
+ * {@link SolrMappingReader} is consulted once per field name instead of once
+ * per value. Field names are usually string
+ * constants of the indexing filters, so lookups go through an identity map
+ * first and fall back to an equality map for names built at runtime.
+ *
+ * Not thread-safe: fields not seen before are added on the fly.
+ */
+public class SolrFieldPlan {
+
+  /** Nutch field whose values are stripped of non-characters. */
+  private static final String SANITIZED_FIELD = "content";
+
+  /** The identity map is cleared when it grows past this size. */
+  private static final int MAX_IDENTITY_ENTRIES = 1024;
+
+  /** How the values of one Nutch field are written. */
+  public static final class Field {
+
+    private final List<String> targets;
+
+    /** Whether values are stripped of non-characters first. */
+    public final boolean sanitize;
+
+    Field(String[] targets, boolean sanitize) {
+      this.targets = Collections.unmodifiableList(Arrays.asList(targets));
+      this.sanitize = sanitize;
+    }
+
+    /** @return the Solr fields to add each value to: the mapped field, then the copy field if any */
+    public List<String> getTargets() {
+      return targets;
+    }
+  }
+
+  private final SolrMappingReader solrMapping;
+  private final Map<String, Field> byIdentity = new IdentityHashMap<String, Field>();
+  private final Map<String, Field> byName = new HashMap<String, Field>();
+
+  public SolrFieldPlan(SolrMappingReader solrMapping) {
+    this.solrMapping = solrMapping;
+  }
+
+  public Field get(String key) throws IOException {
+    Field field = byIdentity.get(key);
+    if (field != null) {
+      return field;
+    }
+    field = byName.get(key);
+    if (field == null) {
+      field = create(key);
+      byName.put(key, field);
+    }
+    // names that are not constants would otherwise fill the identity map
+    if (byIdentity.size() >= MAX_IDENTITY_ENTRIES) {
+      byIdentity.clear();
+    }
+    byIdentity.put(key, field);
+    return field;
+  }
+
+  private Field create(String key) throws IOException {
+    String sKey = solrMapping.mapKey(key);
+    String sCopy = solrMapping.mapCopyKey(key);
+    String[] targets = sCopy.equals(key) ? new String[] { sKey }
+        : new String[] { sKey, sCopy };
+    return new Field(targets, SANITIZED_FIELD.equals(key));
+  }
+}
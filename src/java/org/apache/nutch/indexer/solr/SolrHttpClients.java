@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.indexer.solr;
+
+import java.net.MalformedURLException;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.UsernamePasswordCredentials;
+import org.apache.commons.httpclient.auth.AuthScope;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.solr.client.solrj.impl.BinaryRequestWriter;
+import org.apache.solr.client.solrj.impl.CommonsHttpSolrServer;
+
+/**
+ * Creates the HTTP clients used to talk to Solr: one pool of keep-alive
+ * connections per client, with the limits and timeouts configured by the
+ * <code>solr.http.*</code> properties in {@link SolrConstants}.
+ */
+class SolrHttpClients {
+
+  private SolrHttpClients() {
+  }
+
+  /**
+   * Creates a client with its own connection pool.
+   */
+  public static HttpClient createHttpClient(Configuration conf) {
+    MultiThreadedHttpConnectionManager manager =
+      new MultiThreadedHttpConnectionManager();
+    HttpConnectionManagerParams params = manager.getParams();
+    params.setMaxTotalConnections(conf.getInt(SolrConstants.HTTP_MAX_CONNECTIONS, 128));
+    params.setDefaultMaxConnectionsPerHost(conf.getInt(
+        SolrConstants.HTTP_MAX_CONNECTIONS_PER_HOST, 32));
+    params.setConnectionTimeout(conf.getInt(SolrConstants.HTTP_CONNECTION_TIMEOUT, 10000));
+    params.setSoTimeout(conf.getInt(SolrConstants.HTTP_SOCKET_TIMEOUT, 300000));
+    params.setTcpNoDelay(true);
+    // connections are kept open between requests; check before reusing one
+    // that may have been closed by the server in the meantime
+    params.setStaleCheckingEnabled(true);
+
+    HttpClient client = new HttpClient(manager);
+    if (conf.getBoolean(SolrConstants.USE_AUTH, false)) {
+      client.getParams().setAuthenticationPreemptive(true);
+      client.getState().setCredentials(AuthScope.ANY,
+          new UsernamePasswordCredentials(conf.get(SolrConstants.USERNAME),
+              conf.get(SolrConstants.PASSWORD)));
+    }
+    return client;
+  }
+
+  /**
+   * Creates a server for the given core on top of the client, requesting
+   * gzip compressed responses and, if configured, sending updates in the
+   * javabin format.
+   */
+  public static CommonsHttpSolrServer createServer(String url,
+      HttpClient client, Configuration conf) throws MalformedURLException {
+    CommonsHttpSolrServer server = new CommonsHttpSolrServer(url, client);
+    server.setAllowCompression(conf.getBoolean(SolrConstants.HTTP_COMPRESSION, true));
+    if (conf.getBoolean(SolrConstants.HTTP_JAVABIN, false)) {
+      server.setRequestWriter(new BinaryRequestWriter());
+    }
+    return server;
+  }
+}
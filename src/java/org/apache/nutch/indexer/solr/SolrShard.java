@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.indexer.solr;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.nutch.indexer.NutchDocument;
+import org.apache.solr.client.solrj.impl.CommonsHttpSolrServer;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.ModifiableSolrParams;
+
+/**
+ * One Solr endpoint written to by {@link SolrWriter}, with its own
+ * connection pool, field plan and either its own batch and sender or its
+ * own stream.
+ */
+class SolrShard {
+
+  private final String url;
+  private final SolrWriterMetrics metrics;
+  private final SolrFieldPlan fieldPlan;
+  private final NonCharCodepointStripper stripper = new NonCharCodepointStripper();
+  private final SolrDocumentBatch batch;
+  private final SolrBatchSender sender;
+  private final SolrStreamingUpdater streamer;
+
+  /**
+   * @param defaultThreads
+   *          sender threads if {@link SolrConstants#WRITER_THREADS} is not set
+   */
+  SolrShard(String url, Configuration conf, ModifiableSolrParams params,
+      SolrMappingReader solrMapping, SolrDeadLetterLog deadLetters,
+      SolrWriterMetrics metrics, int defaultThreads) throws IOException {
+    this(SolrHttpClients.createServer(url,
+        SolrHttpClients.createHttpClient(conf), conf), conf, params,
+        solrMapping, deadLetters, metrics, defaultThreads);
+  }
+
+  /**
+   * Writes to the given server; streamed updates bypass it and go through
+   * its HTTP client.
+   * 
+   * @param defaultThreads
+   *          sender threads if {@link SolrConstants#WRITER_THREADS} is not set
+   */
+  SolrShard(CommonsHttpSolrServer solr, Configuration conf,
+      ModifiableSolrParams params, SolrMappingReader solrMapping,
+      SolrDeadLetterLog deadLetters, SolrWriterMetrics metrics,
+      int defaultThreads) {
+    this.url = solr.getBaseURL();
+    this.metrics = metrics;
+    // streaming threads of different shards must not share a field plan
+    this.fieldPlan = new SolrFieldPlan(solrMapping);
+    int maxDocs = conf.getInt(SolrConstants.COMMIT_SIZE, 1000);
+    long maxBytes = conf.getLong(SolrConstants.COMMIT_BYTES, 10L * 1024 * 1024);
+    if (conf.getBoolean(SolrConstants.WRITER_STREAMING, false)) {
+      streamer = new SolrStreamingUpdater(solr.getHttpClient(), url,
+          params, fieldPlan, metrics, maxDocs, maxBytes,
+          conf.getInt(SolrConstants.WRITER_STREAMING_QUEUE_SIZE, 100));
+      batch = null;
+      sender = null;
+    } else {
+      streamer = null;
+      batch = new SolrDocumentBatch(maxDocs, maxBytes,
+          conf.getLong(SolrConstants.COMMIT_LINGER_MS, 0L));
+      sender = new SolrBatchSender(solr, params, conf, deadLetters, metrics,
+          defaultThreads);
+    }
+  }
+
+  /**
+   * Streams <code>doc</code>, or converts it to a Solr document and adds it
+   * to the batch, sending the batch once it is full.
+   */
+  public void write(NutchDocument doc) throws IOException {
+    if (streamer != null) {
+      streamer.add(doc);
+      return;
+    }
+    final long start = System.nanoTime();
+    long sanitizeNanos = 0;
+    final SolrInputDocument inputDoc = new SolrInputDocument();
+    long docBytes = 0;
+    for(final Entry<String, List<String>> e : doc) {
+      final SolrFieldPlan.Field field = fieldPlan.get(e.getKey());
+      for (final String val : e.getValue()) {
+        final String val2;
+        if (field.sanitize) {
+          final long sanitizeStart = System.nanoTime();
+          val2 = stripper.strip(val);
+          sanitizeNanos += System.nanoTime() - sanitizeStart;
+        } else {
+          val2 = val;
+        }
+        for (final String target : field.getTargets()) {
+          inputDoc.addField(target, val2);
+          docBytes += SolrDocumentBatch.estimateSize(target, val2);
+        }
+      }
+    }
+    inputDoc.setDocumentBoost(doc.getScore());
+    metrics.add(SolrWriterMetrics.Counter.SANITIZE_MS, sanitizeNanos);
+    metrics.add(SolrWriterMetrics.Counter.CONVERSION_MS,
+        System.nanoTime() - start - sanitizeNanos);
+    batch.add(inputDoc, docBytes);
+    if (batch.isFull()) {
+      flush();
+    }
+  }
+
+  public void close() throws IOException {
+    if (streamer != null) {
+      streamer.close();
+      return;
+    }
+    try {
+      if (!batch.isEmpty()) {
+        flush();
+      }
+    } finally {
+      sender.close();
+    }
+  }
+
+  /**
+   * Hands the current batch over to the sender; with sender threads the
+   * batch is sent in the background while the next one is being filled.
+   */
+  private void flush() throws IOException {
+    if (SolrWriter.LOG.isDebugEnabled()) {
+      SolrWriter.LOG.debug("Flushing " + batch.size() + " documents, ~"
+          + batch.getBytes() + " bytes to " + url);
+    }
+    metrics.recordBatch(batch.size(), batch.getBytes());
+    sender.send(batch.drain());
+  }
+}
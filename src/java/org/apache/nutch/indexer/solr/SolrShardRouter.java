@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.indexer.solr;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Routes documents to shards by consistent hashing of their key, so a
+ * document always lands on the same shard and adding a shard moves only a
+ * share of the documents. Every shard owns a number of points on a hash
+ * ring; a key belongs to the shard owning the next point.
+ *
+ * Not thread-safe.
+ */
+class SolrShardRouter {
+
+  /** Points per shard; more points spread the keys more evenly. */
+  private static final int POINTS_PER_SHARD = 128;
+
+  private final long[] points;
+  private final int[] shards;
+  private final MessageDigest md5;
+
+  /**
+   * @param names
+   *          stable shard names, e.g. their URLs, in shard order
+   */
+  SolrShardRouter(String[] names) {
+    try {
+      md5 = MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+    TreeMap<Long, Integer> ring = new TreeMap<Long, Integer>();
+    for (int shard = 0; shard < names.length; shard++) {
+      for (int i = 0; i < POINTS_PER_SHARD; i++) {
+        ring.put(hash(names[shard] + "#" + i), shard);
+      }
+    }
+    points = new long[ring.size()];
+    shards = new int[ring.size()];
+    int i = 0;
+    for (Map.Entry<Long, Integer> e : ring.entrySet()) {
+      points[i] = e.getKey();
+      shards[i] = e.getValue();
+      i++;
+    }
+  }
+
+  /** @return the index of the shard the key belongs to */
+  public int route(String key) {
+    int i = Arrays.binarySearch(points, hash(key));
+    if (i < 0) {
+      i = -i - 1;
+    }
+    return shards[i == points.length ? 0 : i];
+  }
+
+  private long hash(String key) {
+    byte[] digest;
+    try {
+      digest = md5.digest(key.getBytes("UTF-8"));
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);
+    }
+    long h = 0;
+    for (int i = 0; i < 8; i++) {
+      h = (h << 8) | (digest[i] & 0xff);
+    }
+    return h;
+  }
+}
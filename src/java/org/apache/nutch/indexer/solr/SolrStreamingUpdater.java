@@ -0,0 +1,351 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.indexer.solr;
+
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.apache.commons.httpclient.methods.RequestEntity;
+import org.apache.nutch.indexer.NutchDocument;
+import org.apache.solr.client.solrj.util.ClientUtils;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams {@link NutchDocument}s to the Solr XML update handler without
+ * building {@link org.apache.solr.common.SolrInputDocument}s or batch lists.
+ * Documents are queued as they are written and serialized by a background
+ * thread straight into a chunked POST body; field values are escaped and
+ * stripped of non-characters while they are written. A request ends after
+ * the configured number of documents or bytes, or when no document arrived
+ * for a few seconds, and the next document starts a new request.
+ *
+ * A failed request fails the writer: documents already streamed cannot be
+ * replayed.
+ */
+class SolrStreamingUpdater {
+
+  public static final Logger LOG = LoggerFactory.getLogger(SolrStreamingUpdater.class);
+
+  private static final NutchDocument END_OF_STREAM = new NutchDocument();
+
+  /** How long an open request waits for the next document. */
+  private static final long IDLE_MS = 5000L;
+
+  private final HttpClient client;
+  private final String updateUrl;
+  private final SolrFieldPlan fieldPlan;
+  private final SolrWriterMetrics metrics;
+  private final int maxDocs;
+  private final long maxBytes;
+  private final BlockingQueue<NutchDocument> queue;
+  private final Thread streamer;
+  private final AtomicReference<Throwable> failure =
+    new AtomicReference<Throwable>();
+  /** Set by the streaming thread once it took {@link #END_OF_STREAM}. */
+  private boolean endOfStream;
+
+  /**
+   * @param maxDocs
+   *          documents per request
+   * @param maxBytes
+   *          bytes per request, or unlimited if &lt;= 0
+   * @param queueSize
+   *          documents that may wait for the streaming thread before
+   *          {@link #add(NutchDocument)} blocks
+   */
+  SolrStreamingUpdater(HttpClient client, String serverUrl,
+      ModifiableSolrParams params, SolrFieldPlan fieldPlan,
+      SolrWriterMetrics metrics, int maxDocs, long maxBytes, int queueSize) {
+    this.client = client;
+    this.updateUrl = serverUrl + "/update" + ClientUtils.toQueryString(params, false);
+    this.fieldPlan = fieldPlan;
+    this.metrics = metrics;
+    this.maxDocs = maxDocs;
+    this.maxBytes = maxBytes;
+    this.queue = new ArrayBlockingQueue<NutchDocument>(Math.max(1, queueSize));
+    this.streamer = new Thread(new Runnable() {
+      public void run() {
+        stream();
+      }
+    }, "SolrStreamingUpdater");
+    streamer.setDaemon(true);
+    streamer.start();
+  }
+
+  /**
+   * Queues a document for streaming. The document must not be modified
+   * afterwards.
+   *
+   * @throws IOException if an earlier request failed
+   */
+  public void add(NutchDocument doc) throws IOException {
+    checkFailure();
+    try {
+      queue.put(doc);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while queueing document");
+    }
+  }
+
+  /**
+   * Waits until all queued documents are streamed.
+   *
+   * @throws IOException if any request failed
+   */
+  public void close() throws IOException {
+    try {
+      queue.put(END_OF_STREAM);
+      streamer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while streaming documents");
+    }
+    checkFailure();
+  }
+
+  private void stream() {
+    NutchDocument first;
+    try {
+      while ((first = queue.take()) != END_OF_STREAM) {
+        if (!post(first)) {
+          return;
+        }
+      }
+    } catch (Throwable t) {
+      LOG.error("Failed to stream documents to " + updateUrl, t);
+      failure.compareAndSet(null, t);
+      // keep taking documents so the writer never blocks on a full queue,
+      // unless the failed request already took the end of the stream
+      try {
+        while (!endOfStream && queue.take() != END_OF_STREAM) {
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Sends one request starting with the given document.
+   *
+   * @return false if the end of the stream was reached
+   */
+  private boolean post(NutchDocument first) throws IOException {
+    DocumentStreamEntity entity = new DocumentStreamEntity(first);
+    PostMethod method = new PostMethod(updateUrl);
+    method.setRequestEntity(entity);
+    long start = System.nanoTime();
+    try {
+      int status;
+      String response;
+      try {
+        status = client.executeMethod(method);
+        response = method.getResponseBodyAsString();
+      } catch (IOException e) {
+        metrics.recordFailedRequest(System.nanoTime() - start);
+        throw e;
+      }
+      if (status != HttpStatus.SC_OK) {
+        metrics.recordFailedRequest(System.nanoTime() - start);
+        throw new IOException("Solr returned " + status + " for "
+            + entity.docs + " documents: " + response);
+      }
+      // includes the time spent waiting for documents
+      metrics.recordRequest(System.nanoTime() - start);
+      metrics.recordBatch(entity.docs, entity.bytes);
+      LOG.info("Streamed " + entity.docs + " documents, " + entity.bytes
+          + " bytes");
+      return !endOfStream;
+    } finally {
+      method.releaseConnection();
+    }
+  }
+
+  private void writeDocument(Writer w, NutchDocument doc) throws IOException {
+    w.write("<doc boost=\"");
+    w.write(Float.toString(doc.getScore()));
+    w.write("\">");
+    for (final Entry<String, List<String>> e : doc) {
+      final List<String> targets = fieldPlan.get(e.getKey()).getTargets();
+      for (final String val : e.getValue()) {
+        for (final String target : targets) {
+          writeField(w, target, val);
+        }
+      }
+    }
+    w.write("</doc>");
+  }
+
+  private static void writeField(Writer w, String name, String value)
+      throws IOException {
+    w.write("<field name=\"");
+    writeEscaped(w, name);
+    w.write("\">");
+    writeEscaped(w, value);
+    w.write("</field>");
+  }
+
+  /**
+   * Writes XML-escaped text, dropping the code points
+   * {@link NonCharCodepointStripper} would strip. Runs of plain characters
+   * are written straight from the string.
+   */
+  static void writeEscaped(Writer w, String s) throws IOException {
+    int start = 0;
+    int len = s.length();
+    for (int i = 0; i < len; i++) {
+      char ch = s.charAt(i);
+      String replacement;
+      switch (ch) {
+      case '<':
+        replacement = "&lt;";
+        break;
+      case '>':
+        replacement = "&gt;";
+        break;
+      case '&':
+        replacement = "&amp;";
+        break;
+      case '"':
+        replacement = "&quot;";
+        break;
+      default:
+        if (ch >= 0x20 && ch < 0xd800) {
+          continue;
+        }
+        int strip = NonCharCodepointStripper.strippableLength(s, i);
+        if (strip == 0) {
+          if (Character.isHighSurrogate(ch)) {
+            // a valid pair, keep the low surrogate too
+            i++;
+          }
+          continue;
+        }
+        w.write(s, start, i - start);
+        i += strip - 1;
+        start = i + 1;
+        continue;
+      }
+      w.write(s, start, i - start);
+      w.write(replacement);
+      start = i + 1;
+    }
+    w.write(s, start, len - start);
+  }
+
+  private void checkFailure() throws IOException {
+    Throwable t = failure.get();
+    if (t != null) {
+      throw new IOException(t);
+    }
+  }
+
+  /**
+   * Request body pulling documents from the queue while it is written.
+   */
+  private class DocumentStreamEntity implements RequestEntity {
+
+    private final NutchDocument first;
+    private int docs;
+    private long bytes;
+
+    DocumentStreamEntity(NutchDocument first) {
+      this.first = first;
+    }
+
+    public boolean isRepeatable() {
+      return false;
+    }
+
+    public long getContentLength() {
+      // unknown, sent chunked
+      return -1;
+    }
+
+    public String getContentType() {
+      return "text/xml; charset=UTF-8";
+    }
+
+    public void writeRequest(OutputStream out) throws IOException {
+      CountingOutputStream counter = new CountingOutputStream(out);
+      Writer w = new BufferedWriter(new OutputStreamWriter(counter, "UTF-8"));
+      w.write("<add>");
+      NutchDocument doc = first;
+      while (true) {
+        writeDocument(w, doc);
+        docs++;
+        if (docs >= maxDocs || (maxBytes > 0 && counter.count >= maxBytes)) {
+          break;
+        }
+        try {
+          doc = queue.poll(IDLE_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while streaming documents");
+        }
+        if (doc == null) {
+          break;
+        }
+        if (doc == END_OF_STREAM) {
+          endOfStream = true;
+          break;
+        }
+      }
+      w.write("</add>");
+      w.flush();
+      bytes = counter.count;
+    }
+  }
+
+  private static class CountingOutputStream extends FilterOutputStream {
+
+    long count;
+
+    CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+  }
+}
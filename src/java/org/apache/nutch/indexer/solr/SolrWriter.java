@@ -16,20 +16,16 @@
  */
 package org.apache.nutch.indexer.solr;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map.Entry;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.nutch.indexer.NutchDocument;
 import org.apache.nutch.indexer.NutchIndexWriter;
-import org.apache.solr.client.solrj.SolrServer;
-import org.apache.solr.client.solrj.SolrServerException;
-import org.apache.solr.client.solrj.impl.CommonsHttpSolrServer;
-import org.apache.solr.client.solrj.request.UpdateRequest;
-import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.common.params.ModifiableSolrParams;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,13 +34,12 @@ public class SolrWriter implements NutchIndexWriter {
 
   public static final Logger LOG = LoggerFactory.getLogger(SolrWriter.class);
 
-  private SolrServer solr;
-  private SolrMappingReader solrMapping;
+  private SolrShard[] shards;
+  private SolrShardRouter router;
+  private SolrDeadLetterLog deadLetters;
+  private SolrDigestStore digests;
+  private SolrWriterMetrics metrics;
 
-  private final List<SolrInputDocument> inputDocs =
-    new ArrayList<SolrInputDocument>();
-
-  private int commitSize;
   private ModifiableSolrParams params;
   private boolean indexjs;
 
@@ -52,10 +47,9 @@ public class SolrWriter implements NutchIndexWriter {
   public void open(TaskAttemptContext job)
   throws IOException {
     Configuration conf = job.getConfiguration();
-    solr = new CommonsHttpSolrServer(conf.get(SolrConstants.SERVER_URL));
-    commitSize = conf.getInt(SolrConstants.COMMIT_SIZE, 1000);
-    solrMapping = SolrMappingReader.getInstance(conf);
+    SolrMappingReader solrMapping = SolrMappingReader.getInstance(conf);
     indexjs= conf.getBoolean("ext.js.indexjs", false);
+    metrics = new SolrWriterMetrics(job, conf);
     
     // parse optional params
     params = new ModifiableSolrParams();
@@ -72,6 +66,60 @@ public class SolrWriter implements NutchIndexWriter {
         
         LOG.info("paramString: " + paramString + ", params: " + params);
     }
+
+    String deadLetterDir = conf.get(SolrConstants.WRITER_DEADLETTER_DIR);
+    if (deadLetterDir != null && deadLetterDir.length() > 0) {
+      deadLetters = new SolrDeadLetterLog(new File(deadLetterDir,
+          "solr-deadletter-" + job.getTaskAttemptID() + ".xml"));
+    }
+
+    String dedupDir = conf.get(SolrConstants.DEDUP_DIR);
+    if (dedupDir != null && dedupDir.length() > 0) {
+      digests = new SolrDigestStore(conf, new Path(dedupDir),
+          job.getTaskAttemptID());
+    }
+
+    String[] urls = getServerUrls(conf);
+    // with several shards send to all of them concurrently by default
+    int defaultThreads = urls.length > 1 ? 1 : 0;
+    shards = new SolrShard[urls.length];
+    for (int i = 0; i < urls.length; i++) {
+      shards[i] = new SolrShard(urls[i], conf, params, solrMapping,
+          deadLetters, metrics, defaultThreads);
+    }
+    if (urls.length > 1) {
+      router = new SolrShardRouter(urls);
+      LOG.info("Routing documents to " + urls.length + " Solr shards");
+    }
+  }
+
+  /**
+   * @return the trimmed, non-blank URLs of {@link SolrConstants#SERVER_URLS},
+   *         or else of {@link SolrConstants#SERVER_URL}
+   * @throws IOException
+   *           if neither is set
+   */
+  static String[] getServerUrls(Configuration conf) throws IOException {
+    // the router hashes the same strings the shards are created with
+    List<String> urls = new ArrayList<String>();
+    String[] values = conf.getStrings(SolrConstants.SERVER_URLS);
+    if (values != null) {
+      for (String value : values) {
+        String url = value.trim();
+        if (url.length() > 0) {
+          urls.add(url);
+        }
+      }
+    }
+    String url = conf.get(SolrConstants.SERVER_URL);
+    if (urls.isEmpty() && url != null && url.trim().length() > 0) {
+      urls.add(url.trim());
+    }
+    if (urls.isEmpty()) {
+      throw new IOException("Neither " + SolrConstants.SERVER_URLS + " nor "
+          + SolrConstants.SERVER_URL + " is set");
+    }
+    return urls.toArray(new String[urls.size()]);
   }
 
   @Override
@@ -80,80 +128,61 @@ public class SolrWriter implements NutchIndexWriter {
     if (!indexjs) {
       if (urlValue != null && urlValue.endsWith(".js")) {
         LOG.info("CVExtension ignore js file: " + urlValue);
+        metrics.increment(SolrWriterMetrics.Counter.SKIPPED_JS);
         return;
       }
     }
-    final SolrInputDocument inputDoc = new SolrInputDocument();
-    for(final Entry<String, List<String>> e : doc) {
-      for (final String val : e.getValue()) {
-
-        Object val2 = val;
-        if (e.getKey().equals("content")) {
-          val2 = stripNonCharCodepoints((String)val);
-        }
-
-        inputDoc.addField(solrMapping.mapKey(e.getKey()), val2);
-        String sCopy = solrMapping.mapCopyKey(e.getKey());
-        if (sCopy != e.getKey()) {
-        	inputDoc.addField(sCopy, val2);
-        } 
-      }
+    String key = doc.getFieldValue(SolrConstants.ID_FIELD);
+    if (key == null) {
+      key = urlValue != null ? urlValue : "";
     }
-    inputDoc.setDocumentBoost(doc.getScore());
-    inputDocs.add(inputDoc);
-    if (inputDocs.size() >= commitSize) {
-      try {
-        LOG.info("Adding " + Integer.toString(inputDocs.size()) + " documents, params: " + params);
-        addDocs();
-      } catch (final SolrServerException e) {
-        throw new IOException(e);
-      }
-      inputDocs.clear();
+    if (digests != null && digests.isUnchanged(key, doc)) {
+      metrics.increment(SolrWriterMetrics.Counter.UNCHANGED);
+      return;
     }
-  }
-
-  private void addDocs() throws SolrServerException, IOException {
-    UpdateRequest req = new UpdateRequest();
-    req.add(inputDocs);
-    req.setParams(params);
-    req.process(solr);
+    metrics.increment(SolrWriterMetrics.Counter.DOCS);
+    final SolrShard shard = router == null ? shards[0] : shards[router.route(key)];
+    shard.write(doc);
+    metrics.maybeReport();
   }
 
   @Override
   public void close() throws IOException {
-    try {
-      if (!inputDocs.isEmpty()) {
-        LOG.info("Adding " + Integer.toString(inputDocs.size()) + " documents, params: " + params);
-        addDocs();
+    IOException failure = null;
+    for (SolrShard shard : shards) {
+      try {
+        shard.close();
+      } catch (IOException e) {
+        if (failure == null) {
+          failure = e;
+        }
       }
-    } catch (final SolrServerException e) {
-      throw new IOException(e);
     }
-    finally
-    {
-      inputDocs.clear();
+    if (digests != null) {
+      // rejected documents must be sent again next time
+      if (failure == null
+          && (deadLetters == null || deadLetters.getCount() == 0)) {
+        digests.commit();
+      } else {
+        digests.abort();
+      }
+    }
+    if (deadLetters != null) {
+      deadLetters.close();
+    }
+    metrics.report();
+    if (failure != null) {
+      throw failure;
     }
   }
 
+  /**
+   * Strips code points Solr cannot index, see
+   * {@link NonCharCodepointStripper}. Returns <code>input</code> itself if
+   * there is nothing to strip.
+   */
   public static String stripNonCharCodepoints(String input) {
-    StringBuilder retval = new StringBuilder();
-    char ch;
-
-    for (int i = 0; i < input.length(); i++) {
-      ch = input.charAt(i);
-
-      // Strip all non-characters http://unicode.org/cldr/utility/list-unicodeset.jsp?a=[:Noncharacter_Code_Point=True:]
-      // and non-printable control characters except tabulator, new line and carriage return
-      if (ch % 0x10000 != 0xffff && // 0xffff - 0x10ffff range step 0x10000
-          ch % 0x10000 != 0xfffe && // 0xfffe - 0x10fffe range
-          (ch <= 0xfdd0 || ch >= 0xfdef) && // 0xfdd0 - 0xfdef
-          (ch > 0x1F || ch == 0x9 || ch == 0xa || ch == 0xd)) {
-
-        retval.append(ch);
-      }
-    }
-
-    return retval.toString();
+    return new NonCharCodepointStripper().strip(input);
   }
 
 }
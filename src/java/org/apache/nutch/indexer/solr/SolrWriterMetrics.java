@@ -0,0 +1,252 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.indexer.solr;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Counts what {@link SolrWriter} does and where its time goes. Counts are
+ * updated by the writer and the sender threads; {@link #maybeReport()} and
+ * {@link #report()} must only be called by the writer. Reports go to the
+ * log and, if {@link SolrConstants#METRICS_DIR} is set, a local properties
+ * file. They do not reach the job: in Hadoop 1.x the context an output
+ * format gets has no reporter, so neither Hadoop counters nor the task
+ * status can be set from a record writer.
+ */
+class SolrWriterMetrics {
+
+  public static final Logger LOG = LoggerFactory.getLogger(SolrWriterMetrics.class);
+
+  enum Counter {
+    DOCS, SKIPPED_JS, UNCHANGED, BATCHES, ESTIMATED_BYTES, RETRIES,
+    FAILED_REQUESTS, DEAD_LETTERS, CONVERSION_MS(true), SANITIZE_MS(true),
+    NETWORK_MS(true);
+
+    /** Counted in nanoseconds, reported in milliseconds. */
+    final boolean nanos;
+
+    Counter() {
+      this(false);
+    }
+
+    Counter(boolean nanos) {
+      this.nanos = nanos;
+    }
+  }
+
+  private static final Counter[] COUNTERS = Counter.values();
+
+  private final AtomicLongArray counts = new AtomicLongArray(COUNTERS.length);
+  private final Histogram requestMs = new Histogram();
+  private final Histogram batchDocs = new Histogram();
+
+  private final File file;
+  private final long intervalMs;
+  private final long start = System.currentTimeMillis();
+  private long nextReport;
+
+  SolrWriterMetrics(TaskAttemptContext job, Configuration conf) {
+    this.intervalMs = conf.getLong(SolrConstants.METRICS_INTERVAL_MS, 30000L);
+    this.nextReport = start + intervalMs;
+    String dir = conf.get(SolrConstants.METRICS_DIR);
+    this.file = dir == null || dir.length() == 0 ? null
+        : new File(dir, "solr-metrics-" + job.getTaskAttemptID() + ".properties");
+  }
+
+  public void increment(Counter counter) {
+    counts.incrementAndGet(counter.ordinal());
+  }
+
+  public void add(Counter counter, long delta) {
+    counts.addAndGet(counter.ordinal(), delta);
+  }
+
+  public long get(Counter counter) {
+    long value = counts.get(counter.ordinal());
+    return counter.nanos ? value / 1000000L : value;
+  }
+
+  /**
+   * Records a batch handed over to a sender.
+   *
+   * @param bytes
+   *          size of the batch, estimated from its field values unless it
+   *          was streamed
+   */
+  public void recordBatch(int docs, long bytes) {
+    increment(Counter.BATCHES);
+    add(Counter.ESTIMATED_BYTES, bytes);
+    batchDocs.add(docs);
+  }
+
+  /** Records a successful update request. */
+  public void recordRequest(long nanos) {
+    add(Counter.NETWORK_MS, nanos);
+    requestMs.add(nanos / 1000000L);
+  }
+
+  /** Records a failed update request. */
+  public void recordFailedRequest(long nanos) {
+    add(Counter.NETWORK_MS, nanos);
+    increment(Counter.FAILED_REQUESTS);
+  }
+
+  /** Reports if the report interval has passed. */
+  public void maybeReport() throws IOException {
+    if (intervalMs > 0 && System.currentTimeMillis() >= nextReport) {
+      report();
+    }
+  }
+
+  public void report() throws IOException {
+    nextReport = System.currentTimeMillis() + intervalMs;
+    String summary = summary();
+    LOG.info(summary);
+    if (file != null) {
+      try {
+        write();
+      } catch (IOException e) {
+        LOG.warn("Cannot write metrics to " + file + ": " + e);
+      }
+    }
+  }
+
+  String summary() {
+    long elapsedMs = Math.max(1, System.currentTimeMillis() - start);
+    StringBuilder sb = new StringBuilder();
+    sb.append(get(Counter.DOCS)).append(" docs (")
+      .append(get(Counter.DOCS) * 1000 / elapsedMs).append("/s), ")
+      .append(get(Counter.ESTIMATED_BYTES)).append(" bytes (estimated) in ")
+      .append(get(Counter.BATCHES)).append(" batches, docs/batch p50=")
+      .append(batchDocs.percentile(0.5)).append(" max=").append(batchDocs.getMax())
+      .append(", request ms p50=").append(requestMs.percentile(0.5))
+      .append(" p99=").append(requestMs.percentile(0.99))
+      .append(" max=").append(requestMs.getMax())
+      .append(", ms converting/sanitizing/network=")
+      .append(get(Counter.CONVERSION_MS)).append('/')
+      .append(get(Counter.SANITIZE_MS)).append('/')
+      .append(get(Counter.NETWORK_MS))
+      .append(", skipped js=").append(get(Counter.SKIPPED_JS))
+      .append(", unchanged=").append(get(Counter.UNCHANGED))
+      .append(", retries=").append(get(Counter.RETRIES))
+      .append(", failed requests=").append(get(Counter.FAILED_REQUESTS))
+      .append(", dead letters=").append(get(Counter.DEAD_LETTERS));
+    return sb.toString();
+  }
+
+  private void write() throws IOException {
+    File dir = file.getParentFile();
+    if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("Cannot create " + dir);
+    }
+    File tmp = new File(file.getPath() + ".tmp");
+    Writer w = new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8");
+    try {
+      w.write("time=" + System.currentTimeMillis() + "\n");
+      for (Counter counter : COUNTERS) {
+        w.write(counter.name().toLowerCase(Locale.ENGLISH) + "=" + get(counter) + "\n");
+      }
+      w.write("request_ms_p50=" + requestMs.percentile(0.5) + "\n");
+      w.write("request_ms_p99=" + requestMs.percentile(0.99) + "\n");
+      w.write("request_ms_max=" + requestMs.getMax() + "\n");
+      w.write("batch_docs_p50=" + batchDocs.percentile(0.5) + "\n");
+      w.write("batch_docs_p99=" + batchDocs.percentile(0.99) + "\n");
+      w.write("batch_docs_max=" + batchDocs.getMax() + "\n");
+    } finally {
+      w.close();
+    }
+    if (!tmp.renameTo(file)) {
+      file.delete();
+      if (!tmp.renameTo(file)) {
+        throw new IOException("Cannot rename " + tmp + " to " + file);
+      }
+    }
+  }
+
+  /**
+   * Histogram of non-negative values with four buckets per power of two,
+   * so percentiles are within 25% of the recorded values. Thread-safe.
+   */
+  static class Histogram {
+
+    private final AtomicLongArray buckets = new AtomicLongArray(bucket(Long.MAX_VALUE) + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void add(long value) {
+      value = Math.max(0, value);
+      buckets.incrementAndGet(bucket(value));
+      count.incrementAndGet();
+      long m;
+      while (value > (m = max.get()) && !max.compareAndSet(m, value)) {
+      }
+    }
+
+    public long getMax() {
+      return max.get();
+    }
+
+    /**
+     * @return an upper bound of the value at the given quantile, or 0 if
+     *         nothing was recorded
+     */
+    public long percentile(double quantile) {
+      long n = count.get();
+      if (n == 0) {
+        return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(quantile * n));
+      long seen = 0;
+      for (int b = 0; b < buckets.length(); b++) {
+        seen += buckets.get(b);
+        if (seen >= rank) {
+          return Math.min(upperBound(b), getMax());
+        }
+      }
+      return getMax();
+    }
+
+    static int bucket(long value) {
+      if (value < 4) {
+        return (int) value;
+      }
+      int msb = 63 - Long.numberOfLeadingZeros(value);
+      return (msb - 1) * 4 + (int) ((value >>> (msb - 2)) & 3);
+    }
+
+    static long upperBound(int bucket) {
+      if (bucket < 4) {
+        return bucket;
+      }
+      int shift = bucket / 4 - 1;
+      long lower = (4L + bucket % 4) << shift;
+      return lower + (1L << shift) - 1;
+    }
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jefferyyuan.codeexample.nutch.parse.js.treenodes;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.CharacterCodingException;
+
+/**
+ * Text view of the remaining bytes of a buffer where every byte is one
+ * character, i.e. of ISO-8859-1 text or of ASCII text in an ASCII
+ * compatible charset. Nothing is copied until a part of the text is
+ * turned into a <code>String</code>.
+ */
+class ByteBufferCharSequence implements CharSequence {
+
+  private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+  private final ByteBuffer buffer;
+  /** The backing array, or null for a direct buffer. */
+  private final byte[] array;
+  private final int offset;
+  private final int length;
+
+  private ByteBufferCharSequence(ByteBuffer buffer, int offset, int length) {
+    this.buffer = buffer;
+    this.array = buffer.hasArray() ? buffer.array() : null;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  /**
+   * Returns the remaining bytes of the buffer as text: a view of the bytes
+   * if every byte is a character, the decoded text otherwise. Malformed
+   * input is replaced. The buffer's position is not changed.
+   */
+  public static CharSequence decode(ByteBuffer buffer, Charset charset) {
+    int start = buffer.position();
+    int length = buffer.remaining();
+    int base = buffer.hasArray() ? buffer.arrayOffset() : 0;
+    if (charset.equals(ISO_8859_1)
+        || (isAsciiCompatible(charset) && isAscii(buffer, start, length))) {
+      return new ByteBufferCharSequence(buffer, base + start, length);
+    }
+    try {
+      return charset.newDecoder()
+          .onMalformedInput(CodingErrorAction.REPLACE)
+          .onUnmappableCharacter(CodingErrorAction.REPLACE)
+          .decode(buffer.duplicate());
+    } catch (CharacterCodingException e) {
+      // cannot happen when replacing
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static boolean isAsciiCompatible(Charset charset) {
+    String name = charset.name();
+    return name.equals("UTF-8") || name.equals("US-ASCII")
+        || name.startsWith("ISO-8859-") || name.startsWith("windows-125");
+  }
+
+  private static boolean isAscii(ByteBuffer buffer, int start, int length) {
+    if (buffer.hasArray()) {
+      byte[] a = buffer.array();
+      int from = buffer.arrayOffset() + start;
+      for (int i = from; i < from + length; i++) {
+        if (a[i] < 0) {
+          return false;
+        }
+      }
+    } else {
+      for (int i = start; i < start + length; i++) {
+        if (buffer.get(i) < 0) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  public char charAt(int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException(String.valueOf(index));
+    }
+    byte b = array != null ? array[offset + index] : buffer.get(offset + index);
+    return (char) (b & 0xff);
+  }
+
+  public int length() {
+    return length;
+  }
+
+  public CharSequence subSequence(int start, int end) {
+    if (start < 0 || end > length || start > end) {
+      throw new IndexOutOfBoundsException(start + ", " + end);
+    }
+    return new ByteBufferCharSequence(buffer, offset + start, end - start);
+  }
+
+  @Override
+  public String toString() {
+    if (array != null) {
+      return new String(array, offset, length, ISO_8859_1);
+    }
+    char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      chars[i] = (char) (buffer.get(offset + i) & 0xff);
+    }
+    return new String(chars);
+  }
+}
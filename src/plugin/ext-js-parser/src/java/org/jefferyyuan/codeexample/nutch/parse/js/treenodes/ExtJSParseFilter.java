@@ -20,13 +20,17 @@ import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.regex.Matcher;
 
+import org.apache.commons.lang.StringUtils;
+import org.apache.avro.util.Utf8;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.nutch.indexer.NutchDocument;
 import org.apache.nutch.parse.HTMLMetaTags;
@@ -40,21 +44,11 @@ import org.apache.nutch.storage.ParseStatus;
 import org.apache.nutch.storage.WebPage;
 import org.apache.nutch.util.NutchConfiguration;
 import org.apache.nutch.util.TableUtil;
-import org.apache.oro.text.regex.MalformedPatternException;
-import org.apache.oro.text.regex.MatchResult;
-import org.apache.oro.text.regex.Pattern;
-import org.apache.oro.text.regex.PatternCompiler;
-import org.apache.oro.text.regex.PatternMatcher;
-import org.apache.oro.text.regex.PatternMatcherInput;
-import org.apache.oro.text.regex.Perl5Compiler;
-import org.apache.oro.text.regex.Perl5Matcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.DocumentFragment;
-import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 /**
  * This class is a heuristic link extractor for JavaScript files and code
@@ -68,139 +62,150 @@ public class ExtJSParseFilter implements ParseFilter, Parser {
       .getLogger(ExtJSParseFilter.class);
 
   private static final int MAX_TITLE_LEN = 80;
-  private static final String DEFAULT_FILE_INCLUDE_PATTERN_STR = "*.js";
-  private static final String ABSOLUTE_URL_PATTERN_STR = "^[http|https|www].*";
-  private static Pattern fileIncludePath, absoluteURLPpattern, outlinkPattern;
+  private static final Utf8 CONTENT_TYPE = new Utf8("Content-Type");
+  private static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
+  /** The outlinks of the page a thread parses. */
+  private static final ThreadLocal<OutlinkAccumulator> ACCUMULATOR =
+    new ThreadLocal<OutlinkAccumulator>() {
+      @Override
+      protected OutlinkAccumulator initialValue() {
+        return new OutlinkAccumulator();
+      }
+    };
+  /**
+   * Minor code of the parse status of a script whose outlinks are partial
+   * because the budget ran out; the major code stays SUCCESS so the
+   * outlinks found are kept.
+   */
+  public static final short SUCCESS_BUDGET_EXCEEDED = 101;
+  /**
+   * Page metadata set when the budget ran out, to what ran out, e.g. "cpu
+   * time".
+   */
+  public static final Utf8 BUDGET_EXCEEDED_KEY = new Utf8("_js_budget_exceeded_");
+  /** Page metadata: digest of the script the stored outlinks come from. */
+  public static final Utf8 DIGEST_KEY = new Utf8("_js_digest_");
+  /** Page metadata: the outlinks of the script, one URL per line. */
+  public static final Utf8 OUTLINKS_KEY = new Utf8("_js_outlinks_");
+
   private Configuration conf;
+  /**
+   * Compiled from conf and replaced as a whole by setConf, so a parser
+   * thread always sees one consistent configuration; read once per call.
+   */
+  private volatile JSExtractionSettings settings;
+  /**
+   * Outlinks emitted per host since setConf, i.e. during the task; null if
+   * disabled.
+   */
+  private volatile OutlinkDedup dedup;
 
   /**
    * Set the {@link Configuration} object
    */
   public void setConf(Configuration conf) {
     this.conf = conf;
-    PatternCompiler patternCompiler = new Perl5Compiler();
-
-    try {
-      String str = conf.get("ext.js.file.include.pattern",
-          DEFAULT_FILE_INCLUDE_PATTERN_STR);
-      fileIncludePath = patternCompiler.compile(str,
-          Perl5Compiler.READ_ONLY_MASK | Perl5Compiler.SINGLELINE_MASK);
-      str = conf.get("ext.js.absolute.url.pattern", ABSOLUTE_URL_PATTERN_STR);
-      absoluteURLPpattern = patternCompiler.compile(str,
-          Perl5Compiler.CASE_INSENSITIVE_MASK | Perl5Compiler.READ_ONLY_MASK
-              | Perl5Compiler.SINGLELINE_MASK);
+    settings = new JSExtractionSettings(conf);
+    dedup = settings.newOutlinkDedup();
+  }
 
-      str = conf.get("ext.js.extract.outlink.pattern");
-      if (!StringUtils.isBlank(str)) {
-        outlinkPattern = patternCompiler.compile(str,
-            Perl5Compiler.READ_ONLY_MASK | Perl5Compiler.MULTILINE_MASK);
-      }
-    } catch (MalformedPatternException e) {
-      throw new RuntimeException(e);
-    }
+  boolean shouldHandlePage(WebPage page) {
+    return shouldHandlePage(settings, page);
   }
 
-  private boolean shouldHandlePage(WebPage page) {
-    boolean shouldHandle = false;
+  private static boolean shouldHandlePage(JSExtractionSettings settings,
+      WebPage page) {
     String url = TableUtil.toString(page.getBaseUrl());
-    PatternMatcher matcher = new Perl5Matcher();
-    if (matcher.matches(url, fileIncludePath)) {
-      shouldHandle = true;
-    }
-    return shouldHandle;
+    return url != null && settings.isIncluded(url);
   }
 
   /**
-   * @param baseUrl
-   *          , is always a folder path: http://... (/tree_nodes.js) is removed.
-   * @param path
-   * @return
-   * @throws MalformedPatternException
+   * @return the compiled settings of the current configuration
    */
-  private static String toAbsolutePath(String baseUrl, String path)
-      throws MalformedPatternException {
-    PatternMatcher matcher = new Perl5Matcher();
-    boolean isAbsolute = false;
-    if (matcher.matches(path, absoluteURLPpattern)) {
-      isAbsolute = true;
-    }
-
-    if (isAbsolute) {
-      return path;
-    }
-    while (true) {
-      if (!path.startsWith("../")) {
-        break;
-      }
-      baseUrl = baseUrl.substring(0, baseUrl.lastIndexOf('/'));
-      path = path.substring(3);
-    }
-    // now relativePath is foldera/fileb, no /
+  JSExtractionSettings getSettings() {
+    return settings;
+  }
 
-    return baseUrl + "/" + path;
+  /**
+   * @return the outlink filter of the task, null if disabled
+   */
+  OutlinkDedup getOutlinkDedup() {
+    return dedup;
   }
 
   /**
    * This method extracts URLs from literals embedded in JavaScript.
    */
-  public static Outlink[] getJSLinks(String plainText, String anchor,
+  public Outlink[] getJSLinks(CharSequence plainText, String anchor,
       String base) {
-    long start = System.currentTimeMillis();
-  
+    JSExtractionSettings settings = this.settings;
+    OutlinkAccumulator outlinks = accumulator();
+    getJSLinks(settings, settings.newBudget(plainText), new int[] { 0,
+        plainText.length() }, 1, anchor, base, outlinks);
+    return outlinks.toOutlinks();
+  }
+
+  /**
+   * @return the empty accumulator of the calling thread
+   */
+  private static OutlinkAccumulator accumulator() {
+    OutlinkAccumulator outlinks = ACCUMULATOR.get();
+    outlinks.reset();
+    return outlinks;
+  }
+
+  /**
+   * Extracts URLs from several scripts in one text. If the budget runs out
+   * the outlinks found so far are kept.
+   *
+   * @param settings
+   *          the settings of the calling parser
+   * @param text
+   *          the scripts, read through the budget of the page
+   * @param bounds
+   *          start and end offset of every script
+   * @param scripts
+   *          number of scripts
+   * @param outlinks
+   *          receives the outlinks, each URL once
+   */
+  private static void getJSLinks(JSExtractionSettings settings,
+      JSScanBudget text, int[] bounds, int scripts, String anchor, String url,
+      OutlinkAccumulator outlinks) {
     // the base is always absolute path: http://.../tree_nodes.js, change it to
     // folder
-    base = base.substring(0, base.lastIndexOf('/'));
-    final List<Outlink> outlinks = new ArrayList<Outlink>();
-    URL baseURL = null;
-  
+    String base = url.substring(0, url.lastIndexOf('/') + 1);
     try {
-      baseURL = new URL(base);
-    } catch (Exception e) {
-      if (LOG.isErrorEnabled()) {
-        LOG.error("error assigning base URL", e);
-      }
-    }
-  
-    try {
-      final PatternMatcher matcher = new Perl5Matcher();
-      final PatternMatcherInput input = new PatternMatcherInput(plainText);
-  
-      MatchResult result;
-      String url;
-  
-      // loop the matches
-      while (matcher.contains(input, outlinkPattern)) {
-        // if this is taking too long, stop matching
-        // (SHOULD really check cpu time used so that heavily loaded systems
-        // do not unnecessarily hit this limit.)
-        if (System.currentTimeMillis() - start >= 60000L) {
-          if (LOG.isWarnEnabled()) {
-            LOG.warn("Time limit exceeded for getOutLinks");
+      // the budget is checked while the text is read, so a single
+      // backtracking match cannot run past it either
+      final boolean useLexer = settings.useLexer();
+      final Matcher matcher = useLexer ? null : settings.outlinkMatcher(text);
+      for (int i = 0; i < scripts; i++) {
+        // scripts are scanned separately, a literal cannot span two
+        if (useLexer) {
+          JSStringLiteralScanner scanner = new JSStringLiteralScanner(text,
+              bounds[2 * i], bounds[2 * i + 1]);
+          while (scanner.next()) {
+            if (settings.hasOutlinkExtension(text, scanner.start(),
+                scanner.end())) {
+              addOutlink(settings, outlinks, scanner.value(), anchor, base);
+            }
+          }
+        } else {
+          matcher.region(bounds[2 * i], bounds[2 * i + 1]);
+          // loop the matches
+          while (matcher.find()) {
+            addOutlink(settings, outlinks, matcher.group(1), anchor, base);
           }
-          break;
-        }
-        result = matcher.getMatch();
-        url = result.group(1);
-        // See if candidate URL is parseable. If not, pass and move on to
-        // the next match.
-        try {
-          url = new URL(toAbsolutePath(base, url)).toString();
-          LOG.info("Extension added: " + url + " and baseURL " + baseURL);
-        } catch (MalformedURLException ex) {
-          // if (LOG.isTraceEnabled()) {
-          // LOG.trace(" - failed URL parse '" + url + "' and baseURL '"
-          // + baseURL + "'", ex);
-          // }
-          LOG.info("Extension - failed URL parse '" + url + "' and baseURL '"
-              + baseURL + "'", ex);
-          continue;
-        }
-        try {
-          outlinks.add(new Outlink(url.toString(), anchor));
-        } catch (MalformedURLException mue) {
-          LOG.warn("Extension Invalid url: '" + url + "', skipping.");
         }
       }
+    } catch (JSScanBudget.BudgetExceededException ex) {
+      if (LOG.isWarnEnabled()) {
+        LOG.warn("Budget exceeded (" + text.getExceeded() + ") for " + url
+            + " after " + text.getCharsScanned() + " characters and "
+            + text.getCpuNanos() / 1000000 + " ms, keeping "
+            + outlinks.size() + " outlinks");
+      }
     } catch (Exception ex) {
       // if the matcher fails (perhaps a malformed URL) we just log it and move
       // on
@@ -209,117 +214,333 @@ public class ExtJSParseFilter implements ParseFilter, Parser {
       }
     }
   
-    final Outlink[] retval;
-    // create array of the Outlinks
-    if (outlinks != null && outlinks.size() > 0) {
-      retval = outlinks.toArray(new Outlink[0]);
-    } else {
-      retval = new Outlink[0];
+    if (LOG.isDebugEnabled() && !text.isExceeded()) {
+      LOG.debug("Scanned " + text.getCharsScanned() + " characters of " + url
+          + " in " + text.getCpuNanos() / 1000000 + " ms");
+    }
+  }
+
+  private static void addOutlink(JSExtractionSettings settings,
+      OutlinkAccumulator outlinks, String candidate, String anchor,
+      String base) {
+    // See if candidate URL is parseable. If not, pass and move on to
+    // the next match.
+    String url = settings.toAbsoluteUrl(base, candidate);
+    if (url == null) {
+      LOG.info("Extension - failed URL parse '" + candidate + "' and baseURL '"
+          + base + "'");
+      return;
+    }
+    // a page gets every outlink once
+    if (outlinks.add(url, anchor)) {
+      LOG.info("Extension added: " + url + " and baseURL " + base);
     }
-  
-    return retval;
   }
 
   @Override
   public Parse filter(String url, WebPage page, Parse parse,
       HTMLMetaTags metaTags, DocumentFragment doc) {
-    if (shouldHandlePage(page)) {
-      ArrayList<Outlink> outlinks = new ArrayList<Outlink>();
-
-      walk(doc, parse, metaTags, url, outlinks);
-      if (outlinks.size() > 0) {
-        Outlink[] old = parse.getOutlinks();
-        String title = parse.getTitle();
-        List<Outlink> list = Arrays.asList(old);
-        outlinks.addAll(list);
-        ParseStatus status = parse.getParseStatus();
-        String text = parse.getText();
-        Outlink[] newlinks = outlinks.toArray(new Outlink[outlinks.size()]);
-        return new Parse(text, title, newlinks, status);
+    JSExtractionSettings settings = this.settings;
+    if (shouldHandlePage(settings, page)) {
+      StringBuilder scripts = new StringBuilder();
+      int[] bounds = walk(doc, scripts);
+      JSScanBudget budget = settings.newBudget(scripts);
+      OutlinkAccumulator links = accumulator();
+      getJSLinks(settings, budget, bounds, bounds[bounds.length - 1], "", url,
+          links);
+      if (budget.isExceeded()) {
+        markBudgetExceeded(page, budget);
+      } else {
+        page.removeFromMetadata(BUDGET_EXCEEDED_KEY);
+      }
+      OutlinkDedup dedup = this.dedup;
+      if (dedup != null) {
+        dedup.filter(url, links);
+      }
+      if (links.size() > 0) {
+        // the first outlink to a URL wins, but the parser's anchor text
+        // is kept
+        int duplicates = 0;
+        for (Outlink outlink : parse.getOutlinks()) {
+          if (!links.add(outlink)) {
+            duplicates++;
+          }
+        }
+        if (dedup != null) {
+          dedup.addPageDuplicates(duplicates);
+        }
+        return new Parse(parse.getText(), parse.getTitle(), links.toOutlinks(),
+            parse.getParseStatus());
       }
     }
     return parse;
   }
 
-  private void walk(Node n, Parse parse, HTMLMetaTags metaTags, String base,
-      List<Outlink> outlinks) {
-    if (n instanceof Element) {
-      String name = n.getNodeName();
-      if (name.equalsIgnoreCase("script")) {
-        @SuppressWarnings("unused")
-        String lang = null;
-        Node lNode = n.getAttributes().getNamedItem("language");
-        if (lNode == null)
-          lang = "javascript";
-        else
-          lang = lNode.getNodeValue();
-        StringBuilder script = new StringBuilder();
-        NodeList nn = n.getChildNodes();
-        if (nn.getLength() > 0) {
-          for (int i = 0; i < nn.getLength(); i++) {
-            if (i > 0)
-              script.append('\n');
-            script.append(nn.item(i).getNodeValue());
+  /**
+   * Collects the scripts of a document in document order into one buffer:
+   * the text of script elements, event handler attributes and
+   * <code>javascript:</code> links. Walks the tree with an explicit stack,
+   * visiting elements only.
+   *
+   * @return start and end offset of every script in <code>scripts</code>;
+   *         the last element is the number of scripts
+   */
+  static int[] walk(Node root, StringBuilder scripts) {
+    int[] bounds = new int[17];
+    int count = 0;
+    List<Node> stack = new ArrayList<Node>();
+    stack.add(root);
+    while (!stack.isEmpty()) {
+      Node n = stack.remove(stack.size() - 1);
+      boolean descend = true;
+      if (n.getNodeType() == Node.ELEMENT_NODE) {
+        String name = n.getNodeName();
+        if (name.equalsIgnoreCase("script")) {
+          Node child = n.getFirstChild();
+          if (child != null) {
+            int start = scripts.length();
+            for (; child != null; child = child.getNextSibling()) {
+              if (scripts.length() > start)
+                scripts.append('\n');
+              String value = child.getNodeValue();
+              if (value != null)
+                scripts.append(value);
+            }
+            bounds = addBounds(bounds, count++, start, scripts.length());
+            // no other children of interest here, go one level up.
+            continue;
           }
-          Outlink[] links = getJSLinks(script.toString(), "", base);
-          if (links != null && links.length > 0)
-            outlinks.addAll(Arrays.asList(links));
-          // no other children of interest here, go one level up.
-          return;
-        }
-      } else {
-        // process all HTML 4.0 events, if present...
-        NamedNodeMap attrs = n.getAttributes();
-        int len = attrs.getLength();
-        for (int i = 0; i < len; i++) {
-          Node anode = attrs.item(i);
-          Outlink[] links = null;
-          if (anode.getNodeName().startsWith("on")) {
-            links = getJSLinks(anode.getNodeValue(), "", base);
-          } else if (anode.getNodeName().equalsIgnoreCase("href")) {
-            String val = anode.getNodeValue();
-            if (val != null && val.toLowerCase().indexOf("javascript:") != -1) {
-              links = getJSLinks(val, "", base);
+        } else {
+          // elements holding nothing but text
+          descend = !(name.equalsIgnoreCase("style")
+              || name.equalsIgnoreCase("textarea")
+              || name.equalsIgnoreCase("title"));
+          if (n.hasAttributes()) {
+            // process all HTML 4.0 events, if present...
+            NamedNodeMap attrs = n.getAttributes();
+            int len = attrs.getLength();
+            for (int i = 0; i < len; i++) {
+              Node anode = attrs.item(i);
+              String attr = anode.getNodeName();
+              String val = anode.getNodeValue();
+              if (val == null)
+                continue;
+              if (attr.startsWith("on")
+                  || (attr.equalsIgnoreCase("href") && containsIgnoreCase(val,
+                      "javascript:"))) {
+                int start = scripts.length();
+                scripts.append(val);
+                bounds = addBounds(bounds, count++, start, scripts.length());
+              }
             }
           }
-          if (links != null && links.length > 0)
-            outlinks.addAll(Arrays.asList(links));
+        }
+      }
+      if (descend) {
+        // pushed in reverse, so children are visited in document order
+        for (Node child = n.getLastChild(); child != null; child = child
+            .getPreviousSibling()) {
+          if (child.getNodeType() == Node.ELEMENT_NODE) {
+            stack.add(child);
+          }
         }
       }
     }
-    NodeList nl = n.getChildNodes();
-    for (int i = 0; i < nl.getLength(); i++) {
-      walk(nl.item(i), parse, metaTags, base, outlinks);
+    bounds[bounds.length - 1] = count;
+    return bounds;
+  }
+
+  /**
+   * Stores the bounds of script <code>index</code>, growing the array if
+   * needed; the last element is kept for the count.
+   */
+  private static int[] addBounds(int[] bounds, int index, int start, int end) {
+    if (2 * index + 2 > bounds.length - 1) {
+      int[] grown = new int[bounds.length * 2 + 1];
+      System.arraycopy(bounds, 0, grown, 0, 2 * index);
+      bounds = grown;
+    }
+    bounds[2 * index] = start;
+    bounds[2 * index + 1] = end;
+    return bounds;
+  }
+
+  private static boolean containsIgnoreCase(String s, String lowerCase) {
+    int last = s.length() - lowerCase.length();
+    for (int i = 0; i <= last; i++) {
+      if (s.regionMatches(true, i, lowerCase, 0, lowerCase.length())) {
+        return true;
+      }
     }
+    return false;
   }
 
   @Override
   public Parse getParse(String url, WebPage page) {
-    if (!shouldHandlePage(page)) {
+    JSExtractionSettings settings = this.settings;
+    if (!shouldHandlePage(settings, page)) {
       return ParseStatusUtils.getEmptyParse(
           ParseStatusCodes.FAILED_INVALID_FORMAT, "Content not JavaScript: '"
               + TableUtil.toString(page.getContentType()) + "'", getConf());
     }
-    String script = new String(page.getContent().array());
-    Outlink[] outlinks = getJSLinks(script, "", url);
-    if (outlinks == null)
-      outlinks = new Outlink[0];
-    // Title? use the first line of the script...
-    String title;
-    int idx = script.indexOf('\n');
-    if (idx != -1) {
-      if (idx > MAX_TITLE_LEN)
-        idx = MAX_TITLE_LEN;
-      title = script.substring(0, idx);
+    // scan the content in place; only link candidates and the title are
+    // turned into strings, and the whole text only if it gets indexed
+    ByteBuffer content = page.getContent();
+    Charset charset = getCharset(page);
+    CharSequence script = content == null ? "" : ByteBufferCharSequence
+        .decode(content, charset);
+    // outlinks of a script are stored with its digest, and reused as long
+    // as neither the script nor the settings change
+    byte[] digest = settings.isReuseUnchanged() && content != null ? digest(
+        settings, url, charset, content) : null;
+    OutlinkAccumulator outlinks = accumulator();
+    if (digest != null && getStoredOutlinks(page, digest, outlinks)) {
+      LOG.debug("Reusing " + outlinks.size() + " outlinks of unchanged " + url);
     } else {
-      idx = Math.min(MAX_TITLE_LEN, script.length());
-      title = script.substring(0, idx);
+      JSScanBudget budget = settings.newBudget(script);
+      getJSLinks(settings, budget, new int[] { 0, script.length() }, 1, "", url,
+          outlinks);
+      if (budget.isExceeded()) {
+        markBudgetExceeded(page, budget);
+        // partial outlinks are not reused, the next parse scans again
+        page.removeFromMetadata(DIGEST_KEY);
+        page.removeFromMetadata(OUTLINKS_KEY);
+      } else {
+        page.removeFromMetadata(BUDGET_EXCEEDED_KEY);
+        if (digest != null) {
+          storeOutlinks(page, digest, outlinks);
+        }
+      }
     }
-    Parse parse = new Parse(script, title, outlinks,
-        ParseStatusUtils.STATUS_SUCCESS);
+    // stored outlinks are complete, only those emitted are filtered
+    OutlinkDedup dedup = this.dedup;
+    if (dedup != null) {
+      dedup.filter(url, outlinks);
+    }
+    // Title? use the first line of the script...
+    int idx = 0;
+    int max = Math.min(MAX_TITLE_LEN, script.length());
+    while (idx < max && script.charAt(idx) != '\n') {
+      idx++;
+    }
+    String title = script.subSequence(0, idx).toString();
+    String text = settings.isIndexjs() ? script.toString() : "";
+    ParseStatus status = ParseStatusUtils.STATUS_SUCCESS;
+    ByteBuffer exceeded = page.getFromMetadata(BUDGET_EXCEEDED_KEY);
+    if (exceeded != null) {
+      status = new ParseStatus();
+      status.setMajorCode(ParseStatusCodes.SUCCESS);
+      status.setMinorCode(SUCCESS_BUDGET_EXCEEDED);
+      status.addToArgs(new Utf8("outlinks partial, "
+          + DEFAULT_CHARSET.decode(exceeded.duplicate()) + " exceeded"));
+    }
+    Parse parse = new Parse(text, title, outlinks.toOutlinks(), status);
     return parse;
   }
 
+  /**
+   * @return MD5 digest of the script, its URL and charset and the
+   *         extraction settings
+   */
+  private static byte[] digest(JSExtractionSettings settings, String url,
+      Charset charset, ByteBuffer content) {
+    MessageDigest md;
+    try {
+      md = MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      // every JVM has MD5
+      throw new IllegalStateException(e);
+    }
+    md.update((settings.getFingerprint() + '\n' + url + '\n' + charset.name())
+        .getBytes(DEFAULT_CHARSET));
+    md.update(content.duplicate());
+    return md.digest();
+  }
+
+  /**
+   * Adds the outlinks stored with <code>digest</code>.
+   *
+   * @return false if the page has none or they belong to another digest
+   */
+  private static boolean getStoredOutlinks(WebPage page, byte[] digest,
+      OutlinkAccumulator outlinks) {
+    ByteBuffer stored = page.getFromMetadata(DIGEST_KEY);
+    ByteBuffer urls = page.getFromMetadata(OUTLINKS_KEY);
+    if (stored == null || urls == null
+        || !stored.equals(ByteBuffer.wrap(digest))) {
+      return false;
+    }
+    String str = DEFAULT_CHARSET.decode(urls.duplicate()).toString();
+    for (String url : StringUtils.split(str, '\n')) {
+      outlinks.add(url, "");
+    }
+    return true;
+  }
+
+  private static void storeOutlinks(WebPage page, byte[] digest,
+      OutlinkAccumulator outlinks) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < outlinks.size(); i++) {
+      if (sb.length() > 0) {
+        sb.append('\n');
+      }
+      sb.append(outlinks.getUrl(i));
+    }
+    page.putToMetadata(DIGEST_KEY, ByteBuffer.wrap(digest));
+    page.putToMetadata(OUTLINKS_KEY,
+        ByteBuffer.wrap(sb.toString().getBytes(DEFAULT_CHARSET)));
+  }
+
+  /**
+   * Flags a page whose outlinks are partial, so runaway pages can be found
+   * in the web table.
+   */
+  private static void markBudgetExceeded(WebPage page, JSScanBudget budget) {
+    page.putToMetadata(BUDGET_EXCEEDED_KEY,
+        ByteBuffer.wrap(budget.getExceeded().getBytes(DEFAULT_CHARSET)));
+  }
+
+  /**
+   * @return the charset of the Content-Type header or of the content type,
+   *         UTF-8 if neither names a supported one
+   */
+  private static Charset getCharset(WebPage page) {
+    String name = parseCharset(TableUtil.toString(page.getFromHeaders(CONTENT_TYPE)));
+    if (name == null) {
+      name = parseCharset(TableUtil.toString(page.getContentType()));
+    }
+    if (name != null) {
+      try {
+        return Charset.forName(name);
+      } catch (IllegalArgumentException e) {
+        LOG.debug("Unsupported charset " + name);
+      }
+    }
+    return DEFAULT_CHARSET;
+  }
+
+  /**
+   * @return the charset parameter of a content type, or null
+   */
+  static String parseCharset(String contentType) {
+    if (contentType == null) {
+      return null;
+    }
+    int i = contentType.toLowerCase().indexOf("charset=");
+    if (i < 0) {
+      return null;
+    }
+    int start = i + "charset=".length();
+    int end = start;
+    while (end < contentType.length() && contentType.charAt(end) != ';'
+        && !Character.isWhitespace(contentType.charAt(end))) {
+      end++;
+    }
+    String name = contentType.substring(start, end).replace("\"", "")
+        .replace("'", "");
+    return name.length() > 0 ? name : null;
+  }
+
   /**
    * Main method which can be run from command line with the plugin option. The
    * method takes two arguments e.g. o.a.n.parse.js.JSParseFilter file.js
@@ -330,7 +551,7 @@ public class ExtJSParseFilter implements ParseFilter, Parser {
    */
   public static void main(String[] args) throws Exception {
     if (args.length < 2) {
-      System.err.println(CVTreeNodesJSParseFilter.class.getName()
+      System.err.println(ExtJSParseFilter.class.getName()
           + " file.js baseURL");
       return;
     }
@@ -341,9 +562,9 @@ public class ExtJSParseFilter implements ParseFilter, Parser {
       String line = null;
       while ((line = br.readLine()) != null)
         sb.append(line + "\n");
-      CVTreeNodesJSParseFilter parseFilter = new CVTreeNodesJSParseFilter();
+      ExtJSParseFilter parseFilter = new ExtJSParseFilter();
       parseFilter.setConf(NutchConfiguration.create());
-      Outlink[] links = getJSLinks(sb.toString(), "", args[1]);
+      Outlink[] links = parseFilter.getJSLinks(sb.toString(), "", args[1]);
       System.out.println("Outlinks extracted: " + links.length);
       for (int i = 0; i < links.length; i++)
         System.out.println(" - " + links[i]);
@@ -367,7 +588,7 @@ public class ExtJSParseFilter implements ParseFilter, Parser {
    */
   @Override
   public Collection<WebPage.Field> getFields() {
-    return null;
+    return settings.getFields();
   }
 
 }
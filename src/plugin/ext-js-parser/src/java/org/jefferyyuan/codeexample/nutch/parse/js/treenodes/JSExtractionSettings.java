@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jefferyyuan.codeexample.nutch.parse.js.treenodes;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.nutch.storage.WebPage;
+
+/**
+ * The ext.js.* properties of one configuration, compiled once. Instances
+ * are immutable; compiled patterns are shared and every match uses its own
+ * {@link Matcher}, and the URL resolver is thread-safe, so any number of
+ * parser threads can use the same settings.
+ */
+final class JSExtractionSettings {
+
+  private static final String DEFAULT_FILE_INCLUDE_PATTERN_STR = ".*\\.js";
+  private static final String ABSOLUTE_URL_PATTERN_STR = "^(https?://|www\\.).*";
+  private static final String DEFAULT_OUTLINK_EXTENSIONS = "htm,html,pdf";
+  /** CPU time limit for finding the outlinks of one page. */
+  private static final long DEFAULT_CPU_LIMIT_MS = 60000L;
+  /** Characters read while finding the outlinks of one page. */
+  private static final long DEFAULT_CHAR_LIMIT = 100000000L;
+  /** Bits of one generation of the outlink filter, 1 MB. */
+  private static final int DEFAULT_DEDUP_BITS = 8 * 1024 * 1024;
+  /** Pairs a generation of the outlink filter holds, 0.05% false positives. */
+  private static final int DEFAULT_DEDUP_ENTRIES = 500000;
+
+  private final Pattern fileIncludePath;
+  /** fileIncludePath as a suffix, null if it is not one. */
+  private final UrlSuffixMatcher fileIncludeSuffix;
+  private final Pattern absoluteURLPattern;
+  /** Null if no pattern is configured. */
+  private final Pattern outlinkPattern;
+  /** Lower case outlink extensions with the dot, e.g. ".pdf". */
+  private final String[] outlinkExtensions;
+  private final boolean useLexer;
+  private final JSUrlResolver resolver;
+  private final long cpuLimitMs;
+  private final long charLimit;
+  private final boolean indexjs;
+  private final boolean reuseUnchanged;
+  private final boolean dedupOutlinks;
+  private final int dedupBits;
+  private final int dedupEntries;
+  private final Collection<WebPage.Field> fields;
+  /**
+   * The settings outlinks depend on; stored outlinks found with other
+   * settings are not reused.
+   */
+  private final String fingerprint;
+
+  JSExtractionSettings(Configuration conf) {
+    indexjs = conf.getBoolean("ext.js.indexjs", false);
+    reuseUnchanged = conf.getBoolean("ext.js.extract.reuse.unchanged", true);
+    String str = conf.get("ext.js.file.include.pattern",
+        DEFAULT_FILE_INCLUDE_PATTERN_STR);
+    fileIncludePath = Pattern.compile(str, Pattern.DOTALL);
+    fileIncludeSuffix = UrlSuffixMatcher.compile(str);
+    str = conf.get("ext.js.absolute.url.pattern", ABSOLUTE_URL_PATTERN_STR);
+    absoluteURLPattern = Pattern.compile(str, Pattern.CASE_INSENSITIVE
+        | Pattern.DOTALL);
+
+    str = conf.get("ext.js.extract.outlink.pattern");
+    outlinkPattern = StringUtils.isBlank(str) ? null : Pattern.compile(str,
+        Pattern.MULTILINE);
+
+    String[] extensions = conf.get("ext.js.extract.outlink.extensions",
+        DEFAULT_OUTLINK_EXTENSIONS).split(",");
+    outlinkExtensions = new String[extensions.length];
+    for (int i = 0; i < extensions.length; i++) {
+      outlinkExtensions[i] = "." + extensions[i].trim().toLowerCase();
+    }
+    resolver = new JSUrlResolver(conf.getInt("ext.js.url.cache.size", 10000));
+    // the pattern is only used if asked for, or with nothing else to use
+    useLexer = conf.getBoolean("ext.js.extract.outlink.lexer", true)
+        || outlinkPattern == null;
+    cpuLimitMs = conf.getLong("ext.js.extract.cpu.limit.ms", DEFAULT_CPU_LIMIT_MS);
+    charLimit = conf.getLong("ext.js.extract.char.limit", DEFAULT_CHAR_LIMIT);
+    dedupOutlinks = conf.getBoolean("ext.js.outlink.dedup", false);
+    dedupBits = conf.getInt("ext.js.outlink.dedup.bits", DEFAULT_DEDUP_BITS);
+    dedupEntries = conf.getInt("ext.js.outlink.dedup.entries",
+        DEFAULT_DEDUP_ENTRIES);
+    fingerprint = absoluteURLPattern.pattern() + '\n'
+        + (useLexer ? Arrays.toString(outlinkExtensions) : outlinkPattern.pattern())
+        + '\n' + cpuLimitMs + '\n' + charLimit;
+
+    // the base URL decides whether a page is handled, the rest is only
+    // read for pages that are
+    Set<WebPage.Field> set = new HashSet<WebPage.Field>();
+    set.add(WebPage.Field.BASE_URL);
+    set.add(WebPage.Field.CONTENT);
+    // charset
+    set.add(WebPage.Field.CONTENT_TYPE);
+    set.add(WebPage.Field.HEADERS);
+    if (reuseUnchanged) {
+      // digest and outlinks of the last parse
+      set.add(WebPage.Field.METADATA);
+    }
+    fields = Collections.unmodifiableSet(set);
+  }
+
+  /**
+   * @return true if ext.js.file.include.pattern matches the URL
+   */
+  public boolean isIncluded(String url) {
+    if (fileIncludeSuffix != null) {
+      return fileIncludeSuffix.matches(url);
+    }
+    return fileIncludePath.matcher(url).matches();
+  }
+
+  /**
+   * @param baseFolder
+   *          is always a folder path ending with a slash: the file name of
+   *          http://.../tree_nodes.js is removed.
+   * @param path
+   *          absolute if it matches ext.js.absolute.url.pattern; http:// is
+   *          added if it has no scheme, e.g. for www.example.com/a.htm
+   * @return the normalized absolute URL, or null if it is not valid
+   */
+  public String toAbsoluteUrl(String baseFolder, String path) {
+    if (absoluteURLPattern.matcher(path).matches() && path.indexOf("://") < 0
+        && !path.startsWith("//")) {
+      path = "http://" + path;
+    }
+    return resolver.resolve(baseFolder, path);
+  }
+
+  /**
+   * @return true if the path of the URL candidate in <code>text</code>
+   *         between <code>start</code> and <code>end</code> has one of the
+   *         outlink extensions; query and fragment are ignored
+   */
+  public boolean hasOutlinkExtension(CharSequence text, int start, int end) {
+    int pathEnd = end;
+    for (int i = start; i < end; i++) {
+      char c = text.charAt(i);
+      if (c == '?' || c == '#') {
+        pathEnd = i;
+        break;
+      }
+    }
+    for (String extension : outlinkExtensions) {
+      int from = pathEnd - extension.length();
+      if (from < start) {
+        continue;
+      }
+      int i = 0;
+      while (i < extension.length()
+          && Character.toLowerCase(text.charAt(from + i)) == extension.charAt(i)) {
+        i++;
+      }
+      if (i == extension.length()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return true to find outlinks with the string literal lexer, false to
+   *         use the outlink pattern
+   */
+  public boolean useLexer() {
+    return useLexer;
+  }
+
+  /**
+   * @return a matcher of the outlink pattern, only if not
+   *         {@link #useLexer()}
+   */
+  public Matcher outlinkMatcher(CharSequence text) {
+    return outlinkPattern.matcher(text);
+  }
+
+  /**
+   * @return a new budget of one page, reading <code>text</code>
+   */
+  public JSScanBudget newBudget(CharSequence text) {
+    return new JSScanBudget(text, cpuLimitMs, charLimit);
+  }
+
+  /**
+   * @return a new, empty filter of the outlinks emitted for each host, or
+   *         null if ext.js.outlink.dedup is off
+   */
+  public OutlinkDedup newOutlinkDedup() {
+    return dedupOutlinks ? new OutlinkDedup(dedupBits, dedupEntries) : null;
+  }
+
+  public boolean isIndexjs() {
+    return indexjs;
+  }
+
+  public boolean isReuseUnchanged() {
+    return reuseUnchanged;
+  }
+
+  /**
+   * @return the WebPage fields the parser reads, unmodifiable
+   */
+  public Collection<WebPage.Field> getFields() {
+    return fields;
+  }
+
+  public String getFingerprint() {
+    return fingerprint;
+  }
+}
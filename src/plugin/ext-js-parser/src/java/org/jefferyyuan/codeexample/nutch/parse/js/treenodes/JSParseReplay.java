@@ -0,0 +1,351 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jefferyyuan.codeexample.nutch.parse.js.treenodes;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.avro.util.Utf8;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.nutch.parse.Parse;
+import org.apache.nutch.parse.ParseStatusUtils;
+import org.apache.nutch.parse.ParseUtil;
+import org.apache.nutch.protocol.Content;
+import org.apache.nutch.storage.WebPage;
+import org.apache.nutch.util.MimeUtil;
+import org.apache.nutch.util.NutchConfiguration;
+
+/**
+ * Replays saved pages through the parser, without network or crawl, and
+ * reports pages per second, outlinks per page, latency percentiles and the
+ * slowest pages. The pages are read into memory first, so only parsing is
+ * measured.
+ *
+ * Pages come from a directory of files, with URLs made of
+ * <code>-baseUrl</code> and the relative path and content types guessed
+ * from the file names, or from a SequenceFile of {@link Text} keys and
+ * {@link Content} values such as the content of a segment.
+ *
+ * By default every page goes through {@link ParseUtil}, i.e. the parsers
+ * and parse filters of plugin.includes, as in the parse job; the
+ * {@link ExtJSParseFilter} filter runs on HTML pages there. With
+ * <code>-jsOnly</code> only the pages {@link ExtJSParseFilter#getParse}
+ * handles are replayed, straight through it.
+ *
+ * With <code>-rounds n</code> the pages are replayed n times and only the
+ * last round is reported, the others warm up the JVM.
+ */
+public class JSParseReplay {
+
+  private static final byte[] SEQUENCE_FILE_MAGIC = { 'S', 'E', 'Q' };
+
+  /** A saved page and what replaying it gave. */
+  static class Page {
+    final String url;
+    final String contentType;
+    final byte[] content;
+    long nanos;
+    int outlinks;
+    boolean failed;
+
+    Page(String url, String contentType, byte[] content) {
+      this.url = url;
+      this.contentType = contentType;
+      this.content = content;
+    }
+  }
+
+  private final Configuration conf;
+  private final boolean jsOnly;
+  /** Copies of conf per worker thread, kept across rounds. */
+  private final List<Configuration> threadConfs = new ArrayList<Configuration>();
+
+  public JSParseReplay(Configuration conf, boolean jsOnly) {
+    this.conf = conf;
+    this.jsOnly = jsOnly;
+  }
+
+  /**
+   * Reads the pages of a directory, a SequenceFile or a single file.
+   */
+  public List<Page> read(File input, String baseUrl) throws IOException {
+    List<Page> pages = new ArrayList<Page>();
+    if (input.isDirectory()) {
+      readDirectory(input, baseUrl, new MimeUtil(conf), pages);
+    } else if (isSequenceFile(input)) {
+      readSequenceFile(input, pages);
+    } else {
+      pages.add(new Page(baseUrl + input.getName(), new MimeUtil(conf)
+          .getMimeType(input), readFully(input)));
+    }
+    return pages;
+  }
+
+  private static void readDirectory(File dir, String baseUrl,
+      MimeUtil mimeUtil, List<Page> pages) throws IOException {
+    File[] files = dir.listFiles();
+    if (files == null) {
+      throw new IOException("Cannot list " + dir);
+    }
+    Arrays.sort(files);
+    for (File file : files) {
+      if (file.isDirectory()) {
+        readDirectory(file, baseUrl + file.getName() + "/", mimeUtil, pages);
+      } else {
+        pages.add(new Page(baseUrl + file.getName(), mimeUtil
+            .getMimeType(file), readFully(file)));
+      }
+    }
+  }
+
+  private void readSequenceFile(File file, List<Page> pages)
+      throws IOException {
+    Path path = new Path(file.getAbsolutePath());
+    SequenceFile.Reader reader = new SequenceFile.Reader(
+        FileSystem.getLocal(conf), path, conf);
+    try {
+      Text key = new Text();
+      Content value = new Content();
+      while (reader.next(key, value)) {
+        String url = value.getUrl() != null ? value.getUrl() : key.toString();
+        pages.add(new Page(url, value.getContentType(), value.getContent()));
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+  private static boolean isSequenceFile(File file) throws IOException {
+    byte[] magic = new byte[SEQUENCE_FILE_MAGIC.length];
+    DataInputStream in = new DataInputStream(new FileInputStream(file));
+    try {
+      in.readFully(magic);
+    } catch (IOException e) {
+      // shorter than the magic
+      return false;
+    } finally {
+      in.close();
+    }
+    return Arrays.equals(magic, SEQUENCE_FILE_MAGIC);
+  }
+
+  private static byte[] readFully(File file) throws IOException {
+    byte[] bytes = new byte[(int) file.length()];
+    DataInputStream in = new DataInputStream(new FileInputStream(file));
+    try {
+      in.readFully(bytes);
+    } finally {
+      in.close();
+    }
+    return bytes;
+  }
+
+  /**
+   * Parses every page once, with <code>threads</code> threads, recording
+   * time and outlinks on the pages.
+   *
+   * @return the wall clock time of the round, in nanoseconds
+   */
+  public long replay(final List<Page> pages, int threads)
+      throws InterruptedException {
+    final AtomicInteger next = new AtomicInteger();
+    Thread[] workers = new Thread[threads];
+    for (int i = 0; i < threads; i++) {
+      // the parser factory caches plugin instances per configuration, so
+      // a copy per thread keeps them from being shared between threads
+      if (threadConfs.size() == i) {
+        threadConfs.add(new Configuration(conf));
+      }
+      Configuration threadConf = threadConfs.get(i);
+      final ParseUtil parseUtil = jsOnly ? null : new ParseUtil(threadConf);
+      final ExtJSParseFilter parser = new ExtJSParseFilter();
+      parser.setConf(threadConf);
+      workers[i] = new Thread(new Runnable() {
+        public void run() {
+          int i;
+          while ((i = next.getAndIncrement()) < pages.size()) {
+            parse(pages.get(i), parseUtil, parser);
+          }
+        }
+      }, "JSParseReplay-" + i);
+    }
+    long start = System.nanoTime();
+    for (Thread worker : workers) {
+      worker.start();
+    }
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    return System.nanoTime() - start;
+  }
+
+  private void parse(Page p, ParseUtil parseUtil, ExtJSParseFilter parser) {
+    WebPage page = new WebPage();
+    page.setBaseUrl(new Utf8(p.url));
+    page.setContent(ByteBuffer.wrap(p.content));
+    if (p.contentType != null) {
+      page.setContentType(new Utf8(p.contentType));
+    }
+    long start = System.nanoTime();
+    try {
+      Parse parse = jsOnly ? parser.getParse(p.url, page) : parseUtil.parse(
+          p.url, page);
+      p.failed = parse == null
+          || !ParseStatusUtils.isSuccess(parse.getParseStatus());
+      p.outlinks = parse == null || parse.getOutlinks() == null ? 0 : parse
+          .getOutlinks().length;
+    } catch (Exception e) {
+      ExtJSParseFilter.LOG.warn("Failed to parse " + p.url, e);
+      p.failed = true;
+      p.outlinks = 0;
+    }
+    p.nanos = System.nanoTime() - start;
+  }
+
+  /**
+   * @return the pages the JavaScript parser handles, the only ones
+   *         <code>-jsOnly</code> replays
+   */
+  private static List<Page> handled(List<Page> pages, Configuration conf) {
+    ExtJSParseFilter parser = new ExtJSParseFilter();
+    parser.setConf(conf);
+    List<Page> result = new ArrayList<Page>();
+    for (Page p : pages) {
+      WebPage page = new WebPage();
+      page.setBaseUrl(new Utf8(p.url));
+      if (parser.shouldHandlePage(page)) {
+        result.add(p);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return the report of a round over <code>pages</code>
+   */
+  static String report(List<Page> pages, long wallNanos, int threads, int top) {
+    int n = pages.size();
+    long[] nanos = new long[n];
+    long outlinks = 0;
+    long bytes = 0;
+    int failed = 0;
+    for (int i = 0; i < n; i++) {
+      Page p = pages.get(i);
+      nanos[i] = p.nanos;
+      outlinks += p.outlinks;
+      bytes += p.content.length;
+      if (p.failed) {
+        failed++;
+      }
+    }
+    Arrays.sort(nanos);
+    double seconds = wallNanos / 1e9;
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("pages: %d (%d failed), %.1f MB, %d threads, %.2f s%n",
+        n, failed, bytes / 1048576.0, threads, seconds));
+    sb.append(String.format("throughput: %.1f pages/s, %.2f MB/s%n",
+        n / seconds, bytes / 1048576.0 / seconds));
+    sb.append(String.format("outlinks/page: %.2f%n", n == 0 ? 0.0
+        : (double) outlinks / n));
+    sb.append(String.format("latency ms: p50 %.3f, p90 %.3f, p99 %.3f, p99.9 %.3f, max %.3f%n",
+        percentile(nanos, 0.5) / 1e6, percentile(nanos, 0.9) / 1e6,
+        percentile(nanos, 0.99) / 1e6, percentile(nanos, 0.999) / 1e6,
+        n == 0 ? 0.0 : nanos[n - 1] / 1e6));
+    Page[] slowest = pages.toArray(new Page[n]);
+    Arrays.sort(slowest, new Comparator<Page>() {
+      public int compare(Page a, Page b) {
+        return a.nanos < b.nanos ? 1 : a.nanos == b.nanos ? 0 : -1;
+      }
+    });
+    sb.append("slowest pages:").append(String.format("%n"));
+    for (int i = 0; i < Math.min(top, n); i++) {
+      Page p = slowest[i];
+      sb.append(String.format("  %10.3f ms %8d bytes %5d outlinks %s%s%n",
+          p.nanos / 1e6, p.content.length, p.outlinks, p.url,
+          p.failed ? " (failed)" : ""));
+    }
+    return sb.toString();
+  }
+
+  /** Nearest rank percentile of sorted values. */
+  static long percentile(long[] sorted, double p) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    int rank = (int) Math.ceil(p * sorted.length);
+    return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+  }
+
+  public static void main(String[] args) throws Exception {
+    String usage = JSParseReplay.class.getName()
+        + " <dir|sequenceFile> [-threads n] [-rounds n] [-top n]"
+        + " [-baseUrl url] [-jsOnly]";
+    if (args.length < 1) {
+      System.err.println(usage);
+      return;
+    }
+    int threads = 1;
+    int rounds = 1;
+    int top = 10;
+    String baseUrl = "http://localhost/";
+    boolean jsOnly = false;
+    for (int i = 1; i < args.length; i++) {
+      if (args[i].equals("-threads")) {
+        threads = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-rounds")) {
+        rounds = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-top")) {
+        top = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-baseUrl")) {
+        baseUrl = args[++i];
+      } else if (args[i].equals("-jsOnly")) {
+        jsOnly = true;
+      } else {
+        System.err.println(usage);
+        return;
+      }
+    }
+    Configuration conf = NutchConfiguration.create();
+    JSParseReplay replay = new JSParseReplay(conf, jsOnly);
+    List<Page> pages = replay.read(new File(args[0]), baseUrl);
+    if (jsOnly) {
+      pages = handled(pages, conf);
+    }
+    System.out.println("Replaying " + pages.size() + " pages");
+    long wallNanos = 0;
+    for (int round = 1; round <= rounds; round++) {
+      wallNanos = replay.replay(pages, threads);
+      if (round < rounds) {
+        System.out.println(String.format("warm-up round %d: %.2f s", round,
+            wallNanos / 1e9));
+      }
+    }
+    System.out.print(report(pages, wallNanos, threads, top));
+  }
+}
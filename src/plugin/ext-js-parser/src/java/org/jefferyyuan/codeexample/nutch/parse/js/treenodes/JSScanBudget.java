@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jefferyyuan.codeexample.nutch.parse.js.treenodes;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Text view that charges every character read to the budget of a page: a
+ * number of characters and a CPU time of the current thread. A backtracking
+ * regular expression reads characters again, so it uses up the budget like
+ * a longer text would. Once either part is used up, reading fails with a
+ * {@link BudgetExceededException}, from inside the match that was running.
+ *
+ * The CPU clock is read every few thousand characters only, falling back to
+ * wall clock time where the JVM cannot measure thread CPU time.
+ *
+ * Not thread-safe; a budget belongs to the thread that created it.
+ */
+class JSScanBudget implements CharSequence {
+
+  private static final int CHECK_INTERVAL = 4096;
+  private static final ThreadMXBean THREADS = ManagementFactory
+      .getThreadMXBean();
+
+  private final CharSequence text;
+  private final long cpuLimitNanos;
+  private final long charLimit;
+  private final boolean threadCpuTime;
+  private final long startNanos;
+
+  /** Characters read since the last check. */
+  private int reads;
+  /** Characters read up to the last check. */
+  private long charsScanned;
+  private long cpuNanos;
+  private String exceeded;
+
+  /**
+   * @param cpuLimitMillis
+   *          CPU time limit, negative for no limit
+   * @param charLimit
+   *          maximum number of characters read, negative for no limit
+   */
+  JSScanBudget(CharSequence text, long cpuLimitMillis, long charLimit) {
+    this.text = text;
+    this.cpuLimitNanos = cpuLimitMillis < 0 ? -1 : cpuLimitMillis * 1000000L;
+    this.charLimit = charLimit;
+    this.threadCpuTime = THREADS.isCurrentThreadCpuTimeSupported()
+        && THREADS.isThreadCpuTimeEnabled();
+    this.startNanos = now();
+  }
+
+  private long now() {
+    return threadCpuTime ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+  }
+
+  public char charAt(int index) {
+    if (++reads == CHECK_INTERVAL) {
+      check();
+    }
+    return text.charAt(index);
+  }
+
+  private void check() {
+    charsScanned += reads;
+    reads = 0;
+    cpuNanos = now() - startNanos;
+    if (charLimit >= 0 && charsScanned > charLimit) {
+      exceeded = "characters";
+    } else if (cpuLimitNanos >= 0 && cpuNanos > cpuLimitNanos) {
+      exceeded = "cpu time";
+    } else {
+      return;
+    }
+    throw new BudgetExceededException();
+  }
+
+  public int length() {
+    return text.length();
+  }
+
+  public CharSequence subSequence(int start, int end) {
+    return text.subSequence(start, end);
+  }
+
+  @Override
+  public String toString() {
+    return text.toString();
+  }
+
+  /**
+   * @return true if reading failed because the budget was used up
+   */
+  public boolean isExceeded() {
+    return exceeded != null;
+  }
+
+  /**
+   * @return the number of characters read so far
+   */
+  public long getCharsScanned() {
+    return charsScanned + reads;
+  }
+
+  /**
+   * @return the CPU time used so far, in nanoseconds
+   */
+  public long getCpuNanos() {
+    if (exceeded == null) {
+      cpuNanos = now() - startNanos;
+    }
+    return cpuNanos;
+  }
+
+  /**
+   * @return what ran out, e.g. "cpu time", or null
+   */
+  public String getExceeded() {
+    return exceeded;
+  }
+
+  static class BudgetExceededException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+  }
+}
@@ -0,0 +1,352 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jefferyyuan.codeexample.nutch.parse.js.treenodes;
+
+/**
+ * Single pass lexer finding the string literals of a JavaScript text:
+ * single and double quoted strings and the text parts of template literals.
+ * Comments and regular expression literals are skipped, so quotes inside
+ * them do not start a string. Every character is looked at once.
+ *
+ * Whether a <code>/</code> starts a regular expression or is a division is
+ * decided by the previous token, as far as a lexer can tell.
+ *
+ * Not thread-safe.
+ */
+class JSStringLiteralScanner {
+
+  private final CharSequence text;
+  private final int length;
+  private int pos;
+
+  /** Last character outside comments and whitespace, 0 at the start. */
+  private char previous;
+
+  /** Open braces inside every <code>${</code> of the enclosing templates. */
+  private int[] templateBraces = new int[4];
+  private int templates;
+
+  private int start;
+  private int end;
+  private boolean escaped;
+
+  JSStringLiteralScanner(CharSequence text) {
+    this(text, 0, text.length());
+  }
+
+  /**
+   * Scans the part of <code>text</code> between <code>from</code> and
+   * <code>to</code>; offsets stay relative to <code>text</code>.
+   */
+  JSStringLiteralScanner(CharSequence text, int from, int to) {
+    this.text = text;
+    this.pos = from;
+    this.length = to;
+  }
+
+  /**
+   * Moves to the next string literal.
+   *
+   * @return false if there is none
+   */
+  public boolean next() {
+    while (pos < length) {
+      char c = text.charAt(pos);
+      switch (c) {
+      case '"':
+      case '\'':
+        if (scanString(c)) {
+          return true;
+        }
+        break;
+      case '`':
+        pos++;
+        if (scanTemplate()) {
+          return true;
+        }
+        break;
+      case '/':
+        if (pos + 1 < length && text.charAt(pos + 1) == '/') {
+          skipLineComment();
+        } else if (pos + 1 < length && text.charAt(pos + 1) == '*') {
+          skipBlockComment();
+        } else if (regexAllowed()) {
+          skipRegex();
+        } else {
+          previous = c;
+          pos++;
+        }
+        break;
+      case '{':
+        if (templates > 0) {
+          templateBraces[templates - 1]++;
+        }
+        previous = c;
+        pos++;
+        break;
+      case '}':
+        pos++;
+        if (templates > 0 && templateBraces[templates - 1]-- == 0) {
+          // end of a ${...} expression, back in the template text
+          templates--;
+          if (scanTemplate()) {
+            return true;
+          }
+        } else {
+          previous = c;
+        }
+        break;
+      default:
+        if (c > ' ') {
+          previous = c;
+        }
+        pos++;
+      }
+    }
+    return false;
+  }
+
+  /** @return the offset of the first character of the current literal */
+  public int start() {
+    return start;
+  }
+
+  /** @return the offset after the last character of the current literal */
+  public int end() {
+    return end;
+  }
+
+  /**
+   * @return the value of the current literal, with escape sequences
+   *         resolved
+   */
+  public String value() {
+    if (!escaped) {
+      return text.subSequence(start, end).toString();
+    }
+    StringBuilder sb = new StringBuilder(end - start);
+    for (int i = start; i < end; i++) {
+      char c = text.charAt(i);
+      if (c != '\\' || i + 1 >= end) {
+        sb.append(c);
+        continue;
+      }
+      c = text.charAt(++i);
+      switch (c) {
+      case 'n':
+        sb.append('\n');
+        break;
+      case 't':
+        sb.append('\t');
+        break;
+      case 'r':
+        sb.append('\r');
+        break;
+      case 'b':
+        sb.append('\b');
+        break;
+      case 'f':
+        sb.append('\f');
+        break;
+      case 'v':
+        sb.append('\u000b');
+        break;
+      case '0':
+        sb.append('\0');
+        break;
+      case '\r':
+        // line continuation
+        if (i + 1 < end && text.charAt(i + 1) == '\n') {
+          i++;
+        }
+        break;
+      case '\n':
+        break;
+      case 'x':
+        i = appendHex(sb, i + 1, 2, i);
+        break;
+      case 'u':
+        if (i + 1 < end && text.charAt(i + 1) == '{') {
+          int close = i + 2;
+          while (close < end && text.charAt(close) != '}') {
+            close++;
+          }
+          i = appendHex(sb, i + 2, close - i - 2, i);
+          if (i == close - 1) {
+            i = close;
+          }
+        } else {
+          i = appendHex(sb, i + 1, 4, i);
+        }
+        break;
+      default:
+        sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Appends the code point of <code>digits</code> hex digits at
+   * <code>from</code>; if they are not valid appends the escape character.
+   *
+   * @return the offset of the last character consumed
+   */
+  private int appendHex(StringBuilder sb, int from, int digits, int escape) {
+    if (digits <= 0 || digits > 6 || from + digits > end) {
+      sb.append(text.charAt(escape));
+      return escape;
+    }
+    int cp = 0;
+    for (int i = from; i < from + digits; i++) {
+      int d = Character.digit(text.charAt(i), 16);
+      if (d < 0) {
+        sb.append(text.charAt(escape));
+        return escape;
+      }
+      cp = cp * 16 + d;
+    }
+    if (cp > Character.MAX_CODE_POINT) {
+      sb.append(text.charAt(escape));
+      return escape;
+    }
+    sb.appendCodePoint(cp);
+    return from + digits - 1;
+  }
+
+  /**
+   * Scans a quoted string starting at the quote.
+   *
+   * @return true if it was terminated; strings cannot span lines
+   */
+  private boolean scanString(char quote) {
+    previous = quote;
+    pos++;
+    start = pos;
+    escaped = false;
+    while (pos < length) {
+      char c = text.charAt(pos);
+      if (c == quote) {
+        end = pos++;
+        return true;
+      } else if (c == '\\') {
+        escaped = true;
+        pos += 2;
+      } else if (c == '\n' || c == '\r') {
+        return false;
+      } else {
+        pos++;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Scans template text up to the closing backtick or the next
+   * <code>${</code>.
+   *
+   * @return true if there is text
+   */
+  private boolean scanTemplate() {
+    start = pos;
+    escaped = false;
+    previous = '`';
+    while (pos < length) {
+      char c = text.charAt(pos);
+      if (c == '`') {
+        end = pos++;
+        return end > start;
+      } else if (c == '\\') {
+        escaped = true;
+        pos += 2;
+      } else if (c == '$' && pos + 1 < length && text.charAt(pos + 1) == '{') {
+        end = pos;
+        pos += 2;
+        if (templates == templateBraces.length) {
+          int[] grown = new int[templates * 2];
+          System.arraycopy(templateBraces, 0, grown, 0, templates);
+          templateBraces = grown;
+        }
+        templateBraces[templates++] = 0;
+        previous = '{';
+        return end > start;
+      } else {
+        pos++;
+      }
+    }
+    end = length;
+    return end > start;
+  }
+
+  private void skipLineComment() {
+    pos += 2;
+    while (pos < length) {
+      char c = text.charAt(pos);
+      if (c == '\n' || c == '\r') {
+        return;
+      }
+      pos++;
+    }
+  }
+
+  private void skipBlockComment() {
+    pos += 2;
+    while (pos < length) {
+      if (text.charAt(pos) == '*' && pos + 1 < length
+          && text.charAt(pos + 1) == '/') {
+        pos += 2;
+        return;
+      }
+      pos++;
+    }
+  }
+
+  /**
+   * A slash after an operand is a division, anywhere else it starts a
+   * regular expression. Keywords like <code>return</code> are not told
+   * apart from identifiers.
+   */
+  private boolean regexAllowed() {
+    char p = previous;
+    return !(Character.isLetterOrDigit(p) || p == '_' || p == '$' || p == ')'
+        || p == ']' || p == '}' || p == '"' || p == '\'' || p == '`');
+  }
+
+  private void skipRegex() {
+    pos++;
+    boolean inClass = false;
+    while (pos < length) {
+      char c = text.charAt(pos);
+      if (c == '\\') {
+        pos += 2;
+        continue;
+      } else if (c == '\n' || c == '\r') {
+        // not a regular expression after all
+        break;
+      } else if (c == '[') {
+        inClass = true;
+      } else if (c == ']') {
+        inClass = false;
+      } else if (c == '/' && !inClass) {
+        pos++;
+        break;
+      }
+      pos++;
+    }
+    previous = ')';
+  }
+}
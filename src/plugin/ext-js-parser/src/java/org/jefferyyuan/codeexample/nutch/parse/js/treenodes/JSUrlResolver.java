@@ -0,0 +1,258 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jefferyyuan.codeexample.nutch.parse.js.treenodes;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves references found in scripts against the folder of the page, as
+ * described in RFC 3986 section 5.2, and normalizes the result: scheme and
+ * host are lower cased, default ports and fragments removed. Results are
+ * kept in a bounded LRU cache keyed by base folder and reference, since
+ * navigation scripts repeat the same references on many pages of a folder.
+ *
+ * Thread-safe.
+ */
+class JSUrlResolver {
+
+  /** Cached for references that do not resolve to a valid URL. */
+  private static final String INVALID = new String("invalid");
+
+  private final Map<String, String> cache;
+
+  /**
+   * @param cacheSize
+   *          maximum number of cached references, 0 disables the cache
+   */
+  JSUrlResolver(final int cacheSize) {
+    this.cache = new LinkedHashMap<String, String>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+        return size() > cacheSize;
+      }
+    };
+  }
+
+  /**
+   * @param baseFolder
+   *          absolute URL of the folder of the page, ending with a slash
+   * @param ref
+   *          the reference, relative or absolute
+   * @return the normalized absolute URL, or null if the reference cannot be
+   *         resolved to a valid URL
+   */
+  public String resolve(String baseFolder, String ref) {
+    String key = baseFolder + '\n' + ref;
+    String url;
+    synchronized (cache) {
+      url = cache.get(key);
+    }
+    if (url == null) {
+      url = resolveUncached(baseFolder, ref);
+      synchronized (cache) {
+        cache.put(key, url);
+      }
+    }
+    return url == INVALID ? null : url;
+  }
+
+  private static String resolveUncached(String base, String ref) {
+    String resolved = resolve(parse(base), parse(ref.trim()));
+    if (resolved == null) {
+      return INVALID;
+    }
+    try {
+      // rejects unknown schemes and malformed ports
+      new URL(resolved);
+    } catch (MalformedURLException e) {
+      return INVALID;
+    }
+    return resolved;
+  }
+
+  /**
+   * Splits a URI reference into scheme, authority, path, query and
+   * fragment; undefined components are null, the path is never null.
+   */
+  static String[] parse(String uri) {
+    String[] parts = new String[5];
+    int i = 0;
+    int n = uri.length();
+    // scheme
+    int colon = -1;
+    for (int j = 0; j < n; j++) {
+      char c = uri.charAt(j);
+      if (c == ':') {
+        colon = j;
+        break;
+      }
+      boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+          || (j > 0 && ((c >= '0' && c <= '9') || c == '+' || c == '-' || c == '.'));
+      if (!valid) {
+        break;
+      }
+    }
+    if (colon > 0) {
+      parts[0] = uri.substring(0, colon);
+      i = colon + 1;
+    }
+    // authority
+    if (uri.startsWith("//", i)) {
+      int end = i + 2;
+      while (end < n && "/?#".indexOf(uri.charAt(end)) < 0) {
+        end++;
+      }
+      parts[1] = uri.substring(i + 2, end);
+      i = end;
+    }
+    int pathEnd = i;
+    while (pathEnd < n && "?#".indexOf(uri.charAt(pathEnd)) < 0) {
+      pathEnd++;
+    }
+    parts[2] = uri.substring(i, pathEnd);
+    i = pathEnd;
+    if (i < n && uri.charAt(i) == '?') {
+      int end = uri.indexOf('#', i);
+      if (end < 0) {
+        end = n;
+      }
+      parts[3] = uri.substring(i + 1, end);
+      i = end;
+    }
+    if (i < n) {
+      parts[4] = uri.substring(i + 1);
+    }
+    return parts;
+  }
+
+  /** RFC 3986 section 5.2.2, without the fragment. */
+  private static String resolve(String[] base, String[] ref) {
+    String scheme;
+    String authority;
+    String path;
+    String query;
+    if (ref[0] != null) {
+      scheme = ref[0];
+      authority = ref[1];
+      path = removeDotSegments(ref[2]);
+      query = ref[3];
+    } else {
+      if (base[0] == null) {
+        return null;
+      }
+      scheme = base[0];
+      if (ref[1] != null) {
+        authority = ref[1];
+        path = removeDotSegments(ref[2]);
+        query = ref[3];
+      } else {
+        authority = base[1];
+        if (ref[2].length() == 0) {
+          path = base[2];
+          query = ref[3] != null ? ref[3] : base[3];
+        } else {
+          if (ref[2].charAt(0) == '/') {
+            path = removeDotSegments(ref[2]);
+          } else {
+            path = removeDotSegments(merge(base, ref[2]));
+          }
+          query = ref[3];
+        }
+      }
+    }
+    scheme = scheme.toLowerCase();
+    StringBuilder sb = new StringBuilder(scheme.length() + path.length() + 32);
+    sb.append(scheme).append(':');
+    if (authority != null) {
+      sb.append("//").append(normalizeAuthority(scheme, authority));
+      if (path.length() == 0) {
+        path = "/";
+      }
+    }
+    sb.append(path);
+    if (query != null) {
+      sb.append('?').append(query);
+    }
+    return sb.toString();
+  }
+
+  private static String merge(String[] base, String path) {
+    if (base[1] != null && base[2].length() == 0) {
+      return "/" + path;
+    }
+    return base[2].substring(0, base[2].lastIndexOf('/') + 1) + path;
+  }
+
+  /** RFC 3986 section 5.2.4. */
+  static String removeDotSegments(String path) {
+    if (path.indexOf('.') < 0) {
+      return path;
+    }
+    boolean absolute = path.startsWith("/");
+    String[] segments = path.split("/", -1);
+    List<String> out = new ArrayList<String>(segments.length);
+    boolean trailingSlash = false;
+    for (int i = absolute ? 1 : 0; i < segments.length; i++) {
+      String segment = segments[i];
+      boolean last = i == segments.length - 1;
+      if (segment.equals(".")) {
+        trailingSlash = last;
+      } else if (segment.equals("..")) {
+        if (!out.isEmpty()) {
+          out.remove(out.size() - 1);
+        }
+        trailingSlash = last;
+      } else {
+        out.add(segment);
+      }
+    }
+    StringBuilder sb = new StringBuilder(path.length());
+    if (absolute) {
+      sb.append('/');
+    }
+    for (int i = 0; i < out.size(); i++) {
+      if (i > 0) {
+        sb.append('/');
+      }
+      sb.append(out.get(i));
+    }
+    if (trailingSlash && !out.isEmpty()) {
+      sb.append('/');
+    }
+    return sb.toString();
+  }
+
+  private static String normalizeAuthority(String scheme, String authority) {
+    int at = authority.lastIndexOf('@');
+    String userInfo = at < 0 ? "" : authority.substring(0, at + 1);
+    String hostPort = authority.substring(at + 1).toLowerCase();
+    if ((scheme.equals("http") && hostPort.endsWith(":80"))
+        || (scheme.equals("https") && hostPort.endsWith(":443"))) {
+      hostPort = hostPort.substring(0, hostPort.lastIndexOf(':'));
+    } else if (hostPort.endsWith(":")) {
+      hostPort = hostPort.substring(0, hostPort.length() - 1);
+    }
+    return userInfo + hostPort;
+  }
+}
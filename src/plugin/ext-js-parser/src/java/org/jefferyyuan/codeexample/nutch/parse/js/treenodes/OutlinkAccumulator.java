@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jefferyyuan.codeexample.nutch.parse.js.treenodes;
+
+import java.net.MalformedURLException;
+import java.util.Arrays;
+
+import org.apache.nutch.parse.Outlink;
+
+/**
+ * Collects the outlinks of one page, each URL once and in the order first
+ * added, in parallel arrays with an open addressing index of the URLs.
+ * {@link Outlink} objects are created once, by {@link #toOutlinks()}; those
+ * added as objects are kept as they are, and take the place of an outlink
+ * to the same URL without anchor text.
+ *
+ * Meant to be reused: {@link #reset()} keeps the arrays unless a large page
+ * grew them past {@link #MAX_RETAINED}. Not thread-safe, every parser
+ * thread has its own.
+ */
+class OutlinkAccumulator {
+
+  private static final int INITIAL_CAPACITY = 64;
+  /** Capacity up to which the arrays are kept by reset. */
+  static final int MAX_RETAINED = 8192;
+
+  private String[] urls;
+  private String[] anchors;
+  /** Outlinks added as objects, null for those added as strings. */
+  private Outlink[] outlinks;
+  /** Index + 1 of the outlink of each slot, 0 if the slot is free. */
+  private int[] table;
+  private int size;
+
+  OutlinkAccumulator() {
+    allocate(INITIAL_CAPACITY);
+  }
+
+  private void allocate(int capacity) {
+    urls = new String[capacity];
+    anchors = new String[capacity];
+    outlinks = new Outlink[capacity];
+    table = new int[capacity * 2];
+    size = 0;
+  }
+
+  /**
+   * Removes all outlinks.
+   */
+  public void reset() {
+    if (urls.length > MAX_RETAINED) {
+      allocate(INITIAL_CAPACITY);
+      return;
+    }
+    // no references to the last page are kept
+    Arrays.fill(urls, 0, size, null);
+    Arrays.fill(anchors, 0, size, null);
+    Arrays.fill(outlinks, 0, size, null);
+    Arrays.fill(table, 0);
+    size = 0;
+  }
+
+  /**
+   * @return false if the URL was added before
+   */
+  public boolean add(String url, String anchor) {
+    return add(url, anchor, null);
+  }
+
+  /**
+   * Adds an outlink. If one to the same URL was added before without anchor
+   * text, this one replaces it at its position, so anchors are not lost.
+   *
+   * @return false if an outlink to the same URL was added before
+   */
+  public boolean add(Outlink outlink) {
+    String url = outlink.getToUrl();
+    int index = table[slot(url)] - 1;
+    if (index < 0) {
+      return add(url, outlink.getAnchor(), outlink);
+    }
+    if (isEmpty(anchors[index]) && !isEmpty(outlink.getAnchor())) {
+      anchors[index] = outlink.getAnchor();
+      outlinks[index] = outlink;
+    }
+    return false;
+  }
+
+  private static boolean isEmpty(String anchor) {
+    return anchor == null || anchor.length() == 0;
+  }
+
+  private boolean add(String url, String anchor, Outlink outlink) {
+    int slot = slot(url);
+    if (table[slot] != 0) {
+      return false;
+    }
+    if (size == urls.length) {
+      grow();
+      slot = slot(url);
+    }
+    urls[size] = url;
+    anchors[size] = anchor;
+    outlinks[size] = outlink;
+    table[slot] = ++size;
+    return true;
+  }
+
+  /**
+   * @return the slot of <code>url</code>, or the free slot to put it in
+   */
+  private int slot(String url) {
+    int mask = table.length - 1;
+    int h = url.hashCode();
+    int slot = (h ^ (h >>> 16)) & mask;
+    int index;
+    while ((index = table[slot]) != 0 && !urls[index - 1].equals(url)) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void grow() {
+    int capacity = urls.length * 2;
+    urls = Arrays.copyOf(urls, capacity);
+    anchors = Arrays.copyOf(anchors, capacity);
+    outlinks = Arrays.copyOf(outlinks, capacity);
+    reindex(capacity * 2);
+  }
+
+  private void reindex(int tableSize) {
+    table = new int[tableSize];
+    for (int i = 0; i < size; i++) {
+      table[slot(urls[i])] = i + 1;
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public String getUrl(int i) {
+    return urls[i];
+  }
+
+  /**
+   * Keeps the first <code>count</code> outlinks only.
+   */
+  public void truncate(int count) {
+    if (count >= size) {
+      return;
+    }
+    Arrays.fill(urls, count, size, null);
+    Arrays.fill(anchors, count, size, null);
+    Arrays.fill(outlinks, count, size, null);
+    size = count;
+    reindex(table.length);
+  }
+
+  /**
+   * Moves outlink <code>from</code> to <code>to</code>, a lower position
+   * whose outlink is dropped; followed by {@link #truncate(int)} when done.
+   */
+  public void move(int from, int to) {
+    if (from != to) {
+      urls[to] = urls[from];
+      anchors[to] = anchors[from];
+      outlinks[to] = outlinks[from];
+    }
+  }
+
+  /**
+   * @return the outlinks, skipping URLs {@link Outlink} rejects
+   */
+  public Outlink[] toOutlinks() {
+    Outlink[] result = new Outlink[size];
+    int count = 0;
+    for (int i = 0; i < size; i++) {
+      Outlink outlink = outlinks[i];
+      if (outlink == null) {
+        try {
+          outlink = new Outlink(urls[i], anchors[i]);
+        } catch (MalformedURLException mue) {
+          ExtJSParseFilter.LOG.warn("Extension Invalid url: '" + urls[i]
+              + "', skipping.");
+          continue;
+        }
+      }
+      result[count++] = outlink;
+    }
+    return count == size ? result : Arrays.copyOf(result, count);
+  }
+}
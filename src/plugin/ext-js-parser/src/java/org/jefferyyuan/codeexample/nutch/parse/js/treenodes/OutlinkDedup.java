@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jefferyyuan.codeexample.nutch.parse.js.treenodes;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Drops outlinks a task has already emitted from another page of the same
+ * host, e.g. the links of a navigation script embedded in every page of a
+ * site. Seen (host, URL) pairs are kept in a Bloom filter of fixed size, so
+ * memory does not grow with the crawl; a small fraction of new outlinks,
+ * the false positives, is dropped as well.
+ *
+ * The filter has two generations. Pairs are added to the current one and
+ * looked up in both; once the current one holds <code>capacity</code>
+ * pairs it replaces the previous one, which keeps the false positive rate
+ * bounded while recently seen pairs are still found.
+ *
+ * Thread-safe.
+ */
+class OutlinkDedup {
+  private static final Logger LOG = LoggerFactory.getLogger(OutlinkDedup.class);
+
+  /** Pages after which the counts are logged. */
+  private static final int LOG_INTERVAL = 1000;
+
+  private final int mask;
+  private final int hashes;
+  private final int capacity;
+  private volatile AtomicLongArray current;
+  private volatile AtomicLongArray previous;
+  private final AtomicInteger added = new AtomicInteger();
+
+  private final AtomicLong pages = new AtomicLong();
+  private final AtomicLong checked = new AtomicLong();
+  private final AtomicLong suppressed = new AtomicLong();
+  private final AtomicLong pageDuplicates = new AtomicLong();
+
+  /**
+   * @param bits
+   *          size of one generation in bits, rounded up to a power of two
+   * @param capacity
+   *          pairs a generation holds before it is replaced
+   */
+  OutlinkDedup(int bits, int capacity) {
+    int size = 64;
+    while (size < bits && size < (1 << 30)) {
+      size <<= 1;
+    }
+    this.mask = size - 1;
+    this.capacity = Math.max(1, capacity);
+    // optimal number of hash functions for the bits per pair
+    this.hashes = Math.max(1, Math.min(16,
+        (int) Math.round((double) size / this.capacity * Math.log(2))));
+    this.current = new AtomicLongArray(size / 64);
+    this.previous = new AtomicLongArray(size / 64);
+  }
+
+  /**
+   * Drops the outlinks of the page at <code>url</code> emitted for its host
+   * before, keeping the order of the others.
+   */
+  public void filter(String url, OutlinkAccumulator outlinks) {
+    String host = host(url);
+    int size = outlinks.size();
+    int kept = 0;
+    for (int i = 0; i < size; i++) {
+      if (add(host, outlinks.getUrl(i))) {
+        outlinks.move(i, kept++);
+      }
+    }
+    outlinks.truncate(kept);
+    checked.addAndGet(size);
+    suppressed.addAndGet(size - kept);
+    if (pages.incrementAndGet() % LOG_INTERVAL == 0 && LOG.isInfoEnabled()) {
+      LOG.info(toString());
+    }
+  }
+
+  /**
+   * Counts outlinks dropped because a page had them twice.
+   */
+  public void addPageDuplicates(int count) {
+    pageDuplicates.addAndGet(count);
+  }
+
+  /**
+   * Adds a (host, URL) pair.
+   *
+   * @return false if the pair was probably added before
+   */
+  boolean add(String host, String url) {
+    long h1 = hash(host, url);
+    long h2 = mix(h1 ^ 0x9e3779b97f4a7c15L) | 1;
+    AtomicLongArray current = this.current;
+    AtomicLongArray previous = this.previous;
+    boolean inCurrent = true;
+    boolean inPrevious = true;
+    for (int i = 0; i < hashes; i++) {
+      int bit = (int) (h1 + i * h2) & mask;
+      if (!set(current, bit)) {
+        inCurrent = false;
+      }
+      if (inPrevious && !isSet(previous, bit)) {
+        inPrevious = false;
+      }
+    }
+    if (inCurrent) {
+      return false;
+    }
+    if (added.incrementAndGet() >= capacity) {
+      rotate(current);
+    }
+    // still in the previous generation, now copied to the current one
+    return !inPrevious;
+  }
+
+  private synchronized void rotate(AtomicLongArray full) {
+    if (current != full) {
+      // another thread was first
+      return;
+    }
+    previous = full;
+    current = new AtomicLongArray(full.length());
+    added.set(0);
+    LOG.info("Outlink filter full, starting a new generation; " + this);
+  }
+
+  /**
+   * @return true if the bit was set already
+   */
+  private static boolean set(AtomicLongArray bits, int bit) {
+    int index = bit >>> 6;
+    long mask = 1L << bit;
+    while (true) {
+      long word = bits.get(index);
+      if ((word & mask) != 0) {
+        return true;
+      }
+      if (bits.compareAndSet(index, word, word | mask)) {
+        return false;
+      }
+    }
+  }
+
+  private static boolean isSet(AtomicLongArray bits, int bit) {
+    return (bits.get(bit >>> 6) & (1L << bit)) != 0;
+  }
+
+  /** FNV-1a over host, a separator and URL, then mixed. */
+  private static long hash(String host, String url) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < host.length(); i++) {
+      h = (h ^ host.charAt(i)) * 0x100000001b3L;
+    }
+    h = (h ^ '\n') * 0x100000001b3L;
+    for (int i = 0; i < url.length(); i++) {
+      h = (h ^ url.charAt(i)) * 0x100000001b3L;
+    }
+    return mix(h);
+  }
+
+  /** Final step of MurmurHash3, spreads every input bit. */
+  private static long mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  /**
+   * @return the host and port of <code>url</code>, or the whole string if
+   *         it has none
+   */
+  static String host(String url) {
+    int start = url.indexOf("://");
+    start = start < 0 ? 0 : start + 3;
+    int end = start;
+    while (end < url.length()) {
+      char c = url.charAt(end);
+      if (c == '/' || c == '?' || c == '#') {
+        break;
+      }
+      end++;
+    }
+    return url.substring(start, end);
+  }
+
+  public long getChecked() {
+    return checked.get();
+  }
+
+  /** @return outlinks dropped because their host emitted them before */
+  public long getSuppressed() {
+    return suppressed.get();
+  }
+
+  /** @return outlinks dropped because their page had them twice */
+  public long getPageDuplicates() {
+    return pageDuplicates.get();
+  }
+
+  @Override
+  public String toString() {
+    return pages.get() + " pages, " + checked.get() + " outlinks checked, "
+        + suppressed.get() + " seen on other pages of their host, "
+        + pageDuplicates.get() + " duplicates within a page";
+  }
+}
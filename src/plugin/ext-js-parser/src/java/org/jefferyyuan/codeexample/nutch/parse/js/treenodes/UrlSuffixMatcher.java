@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jefferyyuan.codeexample.nutch.parse.js.treenodes;
+
+/**
+ * Matches URLs against the common form of ext.js.file.include.pattern, a
+ * regular expression <code>.*</code> followed by a suffix, e.g.
+ * <code>.*\.js</code> or <code>.*&#47;tree_nodes.js</code>, by comparing
+ * the end of the URL only. In the suffix an unescaped dot matches any
+ * character and a backslash escapes the next character, as in the regular
+ * expression; any other special character makes {@link #compile} give up.
+ *
+ * Thread-safe.
+ */
+class UrlSuffixMatcher {
+
+  private static final String SPECIAL = "\\[](){}|?*+^$";
+
+  private final char[] suffix;
+  /** Positions of the suffix matching any character. */
+  private final boolean[] any;
+
+  private UrlSuffixMatcher(char[] suffix, boolean[] any) {
+    this.suffix = suffix;
+    this.any = any;
+  }
+
+  /**
+   * @return a matcher equivalent to <code>regex</code> matching whole URLs
+   *         with DOTALL, or null if the pattern is not a plain suffix
+   */
+  static UrlSuffixMatcher compile(String regex) {
+    if (!regex.startsWith(".*")) {
+      return null;
+    }
+    int n = regex.length();
+    char[] suffix = new char[n - 2];
+    boolean[] any = new boolean[n - 2];
+    int length = 0;
+    for (int i = 2; i < n; i++) {
+      char c = regex.charAt(i);
+      if (c == '\\') {
+        // only escaped punctuation is a literal, \d and the like are not
+        if (i + 1 == n || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+          return null;
+        }
+        suffix[length++] = regex.charAt(++i);
+      } else if (c == '.') {
+        any[length++] = true;
+      } else if (SPECIAL.indexOf(c) >= 0) {
+        return null;
+      } else {
+        suffix[length++] = c;
+      }
+    }
+    char[] s = new char[length];
+    boolean[] a = new boolean[length];
+    System.arraycopy(suffix, 0, s, 0, length);
+    System.arraycopy(any, 0, a, 0, length);
+    return new UrlSuffixMatcher(s, a);
+  }
+
+  public boolean matches(CharSequence url) {
+    int from = url.length() - suffix.length;
+    if (from < 0) {
+      return false;
+    }
+    for (int i = suffix.length - 1; i >= 0; i--) {
+      if (!any[i] && url.charAt(from + i) != suffix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
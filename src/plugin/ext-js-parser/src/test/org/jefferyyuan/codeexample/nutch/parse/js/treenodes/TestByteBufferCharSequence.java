@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jefferyyuan.codeexample.nutch.parse.js.treenodes;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit test case for {@link ByteBufferCharSequence}.
+ */
+public class TestByteBufferCharSequence extends TestCase {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  public void testAsciiIsViewed() throws Exception {
+    byte[] bytes = "xx var a = 'b.htm';xx".getBytes("US-ASCII");
+    ByteBuffer buffer = ByteBuffer.wrap(bytes, 2, bytes.length - 4).slice();
+    CharSequence text = ByteBufferCharSequence.decode(buffer, UTF_8);
+    assertTrue(text instanceof ByteBufferCharSequence);
+    assertEquals(" var a = 'b.htm';", text.toString());
+    assertEquals("b.htm", text.subSequence(10, 15).toString());
+    assertEquals(0, buffer.position());
+  }
+
+  public void testDirectBuffer() throws Exception {
+    byte[] bytes = "var a;".getBytes("US-ASCII");
+    ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+    buffer.put(bytes).flip();
+    CharSequence text = ByteBufferCharSequence.decode(buffer, UTF_8);
+    assertEquals("var a;", text.toString());
+    assertEquals('a', text.charAt(4));
+  }
+
+  public void testNonAsciiIsDecoded() throws Exception {
+    String s = "t = '\u00e9t\u00e9.html'; // \u4e2d";
+    CharSequence text = ByteBufferCharSequence.decode(
+        ByteBuffer.wrap(s.getBytes("UTF-8")), UTF_8);
+    assertEquals(s, text.toString());
+
+    Charset cp1251 = Charset.forName("windows-1251");
+    s = "t = '\u0434\u043e\u043c.htm';";
+    text = ByteBufferCharSequence.decode(ByteBuffer.wrap(s.getBytes(cp1251)), cp1251);
+    assertEquals(s, text.toString());
+  }
+
+  public void testLatin1IsViewed() throws Exception {
+    Charset latin1 = Charset.forName("ISO-8859-1");
+    String s = "t = '\u00e9t\u00e9.html';";
+    CharSequence text = ByteBufferCharSequence.decode(
+        ByteBuffer.wrap(s.getBytes(latin1)), latin1);
+    assertTrue(text instanceof ByteBufferCharSequence);
+    assertEquals(s, text.toString());
+  }
+}
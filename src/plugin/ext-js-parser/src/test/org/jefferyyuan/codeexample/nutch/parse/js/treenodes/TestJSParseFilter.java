@@ -22,8 +22,11 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
+import javax.xml.parsers.DocumentBuilderFactory;
+
 import junit.framework.TestCase;
 
+import org.apache.avro.util.Utf8;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.nutch.parse.Outlink;
 import org.apache.nutch.parse.Parse;
@@ -34,6 +37,9 @@ import org.apache.nutch.storage.WebPage;
 import org.apache.nutch.util.MimeUtil;
 import org.apache.nutch.util.NutchConfiguration;
 import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.Element;
 
 /**
  * JUnit test case for {@link ExtJSParseFilter} which tests 1. That 5 outlinks are
@@ -109,19 +115,238 @@ public class TestJSParseFilter extends TestCase {
     }
   }
 
+  @Test
+  public void testGetJSLinksWithPattern() {
+    conf.set("ext.js.extract.outlink.pattern", "\\\"([^\\\"]*.[htm|html|pdf])\\\"");
+    conf.setBoolean("ext.js.extract.outlink.lexer", false);
+    assertGetJSLinks();
+  }
+
   @Test
   public void testGetJSLinks() {
+    assertGetJSLinks();
+  }
+
+  @Test
+  public void testGetJSLinksFromAllLiterals() {
+    ExtJSParseFilter filter = new ExtJSParseFilter();
+    filter.setConf(conf);
+    String plainText = "// [\"Old\", \"old.htm\"]\n"
+        + "['Guide', 'guide.HTML?v=2'], [\"Say \\\"PDF\\\"\", \"a\\/b.pdf\"],"
+        + "['Again', './guide.HTML?v=2']";
+    Outlink[] links = filter.getJSLinks(plainText, "",
+        "http://localhost:8080/hello/tree_nodes.js");
+    assertEquals(2, links.length);
+    assertEquals("http://localhost:8080/hello/guide.HTML?v=2", links[0].getToUrl());
+    assertEquals("http://localhost:8080/hello/a/b.pdf", links[1].getToUrl());
+  }
+
+  @Test
+  public void testParseCharset() {
+    assertEquals("windows-1251", ExtJSParseFilter
+        .parseCharset("application/javascript; charset=\"windows-1251\""));
+    assertEquals("UTF-8", ExtJSParseFilter.parseCharset("text/javascript;Charset=UTF-8;"));
+    assertNull(ExtJSParseFilter.parseCharset("application/x-javascript"));
+    assertNull(ExtJSParseFilter.parseCharset(null));
+  }
+
+  @Test
+  public void testFilter() throws Exception {
+    ExtJSParseFilter filter = new ExtJSParseFilter();
+    filter.setConf(conf);
+    Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+        .newDocument();
+    DocumentFragment root = doc.createDocumentFragment();
+    Element body = doc.createElement("body");
+    root.appendChild(body);
+    Element script = doc.createElement("script");
+    script.appendChild(doc.createTextNode("var a = 'one.htm';"));
+    body.appendChild(script);
+    Element div = doc.createElement("div");
+    div.setAttribute("onclick", "open('two.pdf')");
+    body.appendChild(div);
+    Element link = doc.createElement("a");
+    link.setAttribute("href", "JavaScript:go('three.html')");
+    div.appendChild(link);
+    Element style = doc.createElement("style");
+    Element hidden = doc.createElement("a");
+    hidden.setAttribute("onclick", "open('hidden.htm')");
+    style.appendChild(hidden);
+    body.appendChild(style);
+    // a literal is never read across two scripts
+    Element open = doc.createElement("script");
+    open.appendChild(doc.createTextNode("var b = 'four"));
+    body.appendChild(open);
+    Element close = doc.createElement("script");
+    close.appendChild(doc.createTextNode(".htm';"));
+    body.appendChild(close);
+
+    String url = "http://localhost:8080/hello/tree_nodes.js";
+    WebPage page = new WebPage();
+    page.setBaseUrl(new Utf8(url));
+    Outlink old = new Outlink("http://localhost:8080/hello/two.pdf", "old");
+    Parse parse = filter.filter(url, page, new Parse("", "", new Outlink[] { old },
+        null), null, root);
+    Outlink[] links = parse.getOutlinks();
+    assertEquals(3, links.length);
+    assertEquals("http://localhost:8080/hello/one.htm", links[0].getToUrl());
+    assertEquals("http://localhost:8080/hello/two.pdf", links[1].getToUrl());
+    assertEquals("old", links[1].getAnchor());
+    assertEquals("http://localhost:8080/hello/three.html", links[2].getToUrl());
+  }
+
+  @Test
+  public void testBudgetExceeded() throws Exception {
+    conf.setLong("ext.js.extract.char.limit", 10000);
+    ExtJSParseFilter filter = new ExtJSParseFilter();
+    filter.setConf(conf);
+    StringBuilder script = new StringBuilder("var a = ['one.htm', 'two.pdf'];\n");
+    for (int i = 0; i < 1000; i++) {
+      script.append("var b").append(i).append(" = 'page").append(i).append(".htm';\n");
+    }
+    String url = "http://localhost:8080/hello/tree_nodes.js";
+    WebPage page = new WebPage();
+    page.setBaseUrl(new Utf8(url));
+    page.setContent(ByteBuffer.wrap(script.toString().getBytes("UTF-8")));
+    Parse parse = filter.getParse(url, page);
+    Outlink[] links = parse.getOutlinks();
+    assertTrue(links.length >= 2 && links.length < 1002);
+    assertEquals("http://localhost:8080/hello/one.htm", links[0].getToUrl());
+    assertEquals(ExtJSParseFilter.SUCCESS_BUDGET_EXCEEDED,
+        parse.getParseStatus().getMinorCode());
+    assertNotNull(page.getFromMetadata(ExtJSParseFilter.BUDGET_EXCEEDED_KEY));
+    // partial outlinks are not stored for reuse
+    assertNull(page.getFromMetadata(ExtJSParseFilter.DIGEST_KEY));
+    assertNull(page.getFromMetadata(ExtJSParseFilter.OUTLINKS_KEY));
+
+    // outlinks stored by an earlier, complete scan are dropped as well
+    page.putToMetadata(ExtJSParseFilter.DIGEST_KEY, ByteBuffer.wrap(new byte[16]));
+    page.putToMetadata(ExtJSParseFilter.OUTLINKS_KEY,
+        ByteBuffer.wrap("http://localhost:8080/hello/stored.htm".getBytes("UTF-8")));
+    filter.getParse(url, page);
+    assertNull(page.getFromMetadata(ExtJSParseFilter.DIGEST_KEY));
+    assertNull(page.getFromMetadata(ExtJSParseFilter.OUTLINKS_KEY));
+
+    // the same page is scanned again, in full, once the budget allows it
+    conf.setLong("ext.js.extract.char.limit", -1);
+    filter.setConf(conf);
+    assertEquals(1002, filter.getParse(url, page).getOutlinks().length);
+    assertNull(page.getFromMetadata(ExtJSParseFilter.BUDGET_EXCEEDED_KEY));
+    assertNotNull(page.getFromMetadata(ExtJSParseFilter.DIGEST_KEY));
+  }
+
+  @Test
+  public void testReuseUnchanged() throws Exception {
+    ExtJSParseFilter filter = new ExtJSParseFilter();
+    filter.setConf(conf);
+    String url = "http://localhost:8080/hello/tree_nodes.js";
+    WebPage page = new WebPage();
+    page.setBaseUrl(new Utf8(url));
+    page.setContent(ByteBuffer.wrap("['one.htm', 'two.pdf']".getBytes("UTF-8")));
+    assertEquals(2, filter.getParse(url, page).getOutlinks().length);
+    assertNotNull(page.getFromMetadata(ExtJSParseFilter.DIGEST_KEY));
+
+    // stored outlinks are used while the script is unchanged
+    page.putToMetadata(ExtJSParseFilter.OUTLINKS_KEY,
+        ByteBuffer.wrap("http://localhost:8080/hello/stored.htm".getBytes("UTF-8")));
+    Outlink[] links = filter.getParse(url, page).getOutlinks();
+    assertEquals(1, links.length);
+    assertEquals("http://localhost:8080/hello/stored.htm", links[0].getToUrl());
+
+    page.setContent(ByteBuffer.wrap("['three.htm']".getBytes("UTF-8")));
+    links = filter.getParse(url, page).getOutlinks();
+    assertEquals(1, links.length);
+    assertEquals("http://localhost:8080/hello/three.htm", links[0].getToUrl());
+
+    // other settings find other outlinks
+    conf.set("ext.js.extract.outlink.extensions", "pdf");
+    filter.setConf(conf);
+    assertEquals(0, filter.getParse(url, page).getOutlinks().length);
+  }
+
+  @Test
+  public void testDedupOutlinks() throws Exception {
+    conf.setBoolean("ext.js.outlink.dedup", true);
+    ExtJSParseFilter filter = new ExtJSParseFilter();
+    filter.setConf(conf);
+    byte[] script = "['one.htm', 'two.pdf']".getBytes("UTF-8");
+    String url = "http://localhost:8080/hello/tree_nodes.js";
+    WebPage page = new WebPage();
+    page.setBaseUrl(new Utf8(url));
+    page.setContent(ByteBuffer.wrap(script));
+    assertEquals(2, filter.getParse(url, page).getOutlinks().length);
+
+    // the same script elsewhere on the host adds nothing new
+    url = "http://localhost:8080/hello/more/tree_nodes.js";
+    page = new WebPage();
+    page.setBaseUrl(new Utf8(url));
+    page.setContent(ByteBuffer.wrap("['../one.htm', 'three.htm']".getBytes("UTF-8")));
+    Outlink[] links = filter.getParse(url, page).getOutlinks();
+    assertEquals(1, links.length);
+    assertEquals("http://localhost:8080/hello/more/three.htm", links[0].getToUrl());
+    assertEquals(1, filter.getOutlinkDedup().getSuppressed());
+    // the stored outlinks are complete
+    assertEquals("http://localhost:8080/hello/one.htm\n"
+        + "http://localhost:8080/hello/more/three.htm", new String(page
+        .getFromMetadata(ExtJSParseFilter.OUTLINKS_KEY).array(), "UTF-8"));
+  }
+
+  @Test
+  public void testGetFields() {
+    ExtJSParseFilter filter = new ExtJSParseFilter();
+    filter.setConf(conf);
+    assertTrue(filter.getFields().contains(WebPage.Field.CONTENT));
+    assertTrue(filter.getFields().contains(WebPage.Field.METADATA));
+    assertFalse(filter.getFields().contains(WebPage.Field.OUTLINKS));
+    conf.setBoolean("ext.js.extract.reuse.unchanged", false);
+    filter.setConf(conf);
+    assertFalse(filter.getFields().contains(WebPage.Field.METADATA));
+  }
+
+  @Test
+  public void testSettingsPerInstance() {
+    String plainText = "['Guide', 'guide.htm'], ['Manual', 'manual.pdf']";
+    String base = "http://localhost:8080/hello/tree_nodes.js";
+    ExtJSParseFilter htm = new ExtJSParseFilter();
+    htm.setConf(conf);
+    Configuration pdfConf = new Configuration(conf);
+    pdfConf.set("ext.js.extract.outlink.extensions", "pdf");
+    pdfConf.set("ext.js.file.include.pattern", ".*\\.jsx");
+    ExtJSParseFilter pdf = new ExtJSParseFilter();
+    pdf.setConf(pdfConf);
+    // configuring the second filter does not change the first one
+    assertEquals(2, htm.getJSLinks(plainText, "", base).length);
+    Outlink[] links = pdf.getJSLinks(plainText, "", base);
+    assertEquals(1, links.length);
+    assertEquals("http://localhost:8080/hello/manual.pdf", links[0].getToUrl());
+    assertTrue(htm.getSettings().isIncluded(base));
+    assertFalse(pdf.getSettings().isIncluded(base));
+  }
+
+  @Test
+  public void testBlankPatternUsesLexer() {
+    conf.set("ext.js.extract.outlink.pattern", " ");
+    conf.setBoolean("ext.js.extract.outlink.lexer", false);
+    assertTrue(new JSExtractionSettings(conf).useLexer());
+    assertGetJSLinks();
+  }
+
+  private void assertGetJSLinks() {
+    ExtJSParseFilter filter = new ExtJSParseFilter();
+    filter.setConf(conf);
     String plainText = "[\"Configuration\", \"fs_archive_exchange/web_console/config.htm\", \"main\"],[\"Configuration\", \"../../products/fs_archive_exchange/web_console/config.htm\", \"main\"], \r\n [\"Quick Start Guide - PDF Version\", \"../../pdf/one_pass_exchange.pdf\", \"_blank\"],";
-    Outlink[] links = ExtJSParseFilter
+    Outlink[] links = filter
         .getJSLinks(plainText, "",
             "http://localhost:8080/hello/f1/f2/tree_nodes.js");
-    if (links != null) {
-      System.out.println(links.length);
-      for (Outlink link : links) {
-        System.out.println(link.toString());
-      }
-
-    }
+    assertEquals(3, links.length);
+    assertEquals(
+        "http://localhost:8080/hello/f1/f2/fs_archive_exchange/web_console/config.htm",
+        links[0].getToUrl());
+    assertEquals(
+        "http://localhost:8080/hello/products/fs_archive_exchange/web_console/config.htm",
+        links[1].getToUrl());
+    assertEquals("http://localhost:8080/hello/pdf/one_pass_exchange.pdf",
+        links[2].getToUrl());
   }
 
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jefferyyuan.codeexample.nutch.parse.js.treenodes;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.nutch.util.NutchConfiguration;
+
+/**
+ * JUnit test case for {@link JSParseReplay}.
+ */
+public class TestJSParseReplay extends TestCase {
+
+  private File dir;
+
+  protected void setUp() throws IOException {
+    dir = File.createTempFile("replay", "");
+    dir.delete();
+    new File(dir, "nav").mkdirs();
+    write("nav/tree_nodes.js", "['one.htm', 'two.pdf', 'three.txt']");
+    write("nav/menu.js", "['four.html']");
+  }
+
+  protected void tearDown() {
+    new File(dir, "nav/tree_nodes.js").delete();
+    new File(dir, "nav/menu.js").delete();
+    new File(dir, "nav").delete();
+    dir.delete();
+  }
+
+  private void write(String name, String content) throws IOException {
+    FileOutputStream out = new FileOutputStream(new File(dir, name));
+    try {
+      out.write(content.getBytes("UTF-8"));
+    } finally {
+      out.close();
+    }
+  }
+
+  public void testReplay() throws Exception {
+    Configuration conf = NutchConfiguration.create();
+    conf.set("ext.js.file.include.pattern", ".*\\.js");
+    JSParseReplay replay = new JSParseReplay(conf, true);
+    List<JSParseReplay.Page> pages = replay.read(dir, "http://localhost/help/");
+    assertEquals(2, pages.size());
+    assertEquals("http://localhost/help/nav/menu.js", pages.get(0).url);
+    long nanos = replay.replay(pages, 2);
+    assertTrue(nanos > 0);
+    assertEquals(1, pages.get(0).outlinks);
+    assertEquals(2, pages.get(1).outlinks);
+    String report = JSParseReplay.report(pages, nanos, 2, 1);
+    assertTrue(report, report.contains("outlinks/page: 1.50"));
+    assertTrue(report, report.contains("slowest pages:"));
+  }
+
+  public void testPercentile() {
+    long[] sorted = { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 };
+    assertEquals(5, JSParseReplay.percentile(sorted, 0.5));
+    assertEquals(10, JSParseReplay.percentile(sorted, 0.99));
+    assertEquals(1, JSParseReplay.percentile(sorted, 0.0));
+    assertEquals(0, JSParseReplay.percentile(new long[0], 0.5));
+  }
+}
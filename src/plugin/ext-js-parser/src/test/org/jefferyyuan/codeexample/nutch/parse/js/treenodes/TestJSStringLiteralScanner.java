@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jefferyyuan.codeexample.nutch.parse.js.treenodes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit test case for {@link JSStringLiteralScanner}.
+ */
+public class TestJSStringLiteralScanner extends TestCase {
+
+  private static List<String> literals(String script) {
+    List<String> result = new ArrayList<String>();
+    JSStringLiteralScanner scanner = new JSStringLiteralScanner(script);
+    while (scanner.next()) {
+      result.add(scanner.value());
+    }
+    return result;
+  }
+
+  public void testQuotes() {
+    assertEquals("[a.htm, b.pdf, c]",
+        literals("x = [\"a.htm\", 'b.pdf', \"c\"];").toString());
+  }
+
+  public void testEscapes() {
+    assertEquals("[say \"hi\", it's, /a/b.html, \u00e9]",
+        literals("f(\"say \\\"hi\\\"\", 'it\\'s', \"\\/a\\/b.html\", '\\u00e9')").toString());
+  }
+
+  public void testComments() {
+    assertEquals("[real.htm]", literals("// \"no.htm\"\n/* 'no.pdf' */ x = 'real.htm';").toString());
+  }
+
+  public void testRegexLiterals() {
+    assertEquals("[a.htm]", literals("if (/[\"']/.test(s)) { y = 'a.htm'; }").toString());
+    // a division, not a regular expression
+    assertEquals("[b.htm]", literals("z = a / 2; w = \"b.htm\" / 1;").toString());
+  }
+
+  public void testTemplates() {
+    assertEquals("[docs/, .html, c]",
+        literals("u = `docs/${name + {a: 1}.a}.html`; v = 'c';").toString());
+  }
+
+  public void testUnterminated() {
+    assertEquals("[ok]", literals("a = \"broken\nb = 'ok'; c = 'open").toString());
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jefferyyuan.codeexample.nutch.parse.js.treenodes;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit test case for {@link JSUrlResolver}.
+ */
+public class TestJSUrlResolver extends TestCase {
+
+  private static final String BASE = "http://a/b/c/d;p?q";
+
+  private JSUrlResolver resolver;
+
+  protected void setUp() {
+    resolver = new JSUrlResolver(100);
+  }
+
+  /** The examples of RFC 3986 section 5.4, without fragments. */
+  public void testRfcExamples() {
+    String[][] examples = { { "g", "http://a/b/c/g" },
+        { "./g", "http://a/b/c/g" }, { "g/", "http://a/b/c/g/" },
+        { "/g", "http://a/g" }, { "//g", "http://g/" },
+        { "?y", "http://a/b/c/d;p?y" }, { "g?y", "http://a/b/c/g?y" },
+        { "g#s", "http://a/b/c/g" }, { ";x", "http://a/b/c/;x" },
+        { "", "http://a/b/c/d;p?q" }, { ".", "http://a/b/c/" },
+        { "./", "http://a/b/c/" }, { "..", "http://a/b/" },
+        { "../", "http://a/b/" }, { "../g", "http://a/b/g" },
+        { "../..", "http://a/" }, { "../../", "http://a/" },
+        { "../../g", "http://a/g" }, { "../../../g", "http://a/g" },
+        { "../../../../g", "http://a/g" }, { "/./g", "http://a/g" },
+        { "/../g", "http://a/g" }, { "g.", "http://a/b/c/g." },
+        { ".g", "http://a/b/c/.g" }, { "g..", "http://a/b/c/g.." },
+        { "..g", "http://a/b/c/..g" }, { "./../g", "http://a/b/g" },
+        { "./g/.", "http://a/b/c/g/" }, { "g/./h", "http://a/b/c/g/h" },
+        { "g/../h", "http://a/b/c/h" }, { "g;x=1/./y", "http://a/b/c/g;x=1/y" },
+        { "g;x=1/../y", "http://a/b/c/y" }, { "g?y/./x", "http://a/b/c/g?y/./x" } };
+    for (String[] example : examples) {
+      assertEquals(example[0], example[1], resolver.resolve(BASE, example[0]));
+    }
+  }
+
+  public void testNormalizes() {
+    assertEquals("http://example.com/A/b.htm",
+        resolver.resolve("HTTP://Example.COM:80/A/", "b.htm"));
+    assertEquals("https://example.com/x.pdf",
+        resolver.resolve("http://h/", "https://EXAMPLE.com:443/x.pdf"));
+  }
+
+  public void testInvalid() {
+    assertNull(resolver.resolve("http://h/", "javascript:void(0)"));
+    assertNull(resolver.resolve("http://h/", "http://h:port/a.htm"));
+    // cached as invalid
+    assertNull(resolver.resolve("http://h/", "javascript:void(0)"));
+  }
+}
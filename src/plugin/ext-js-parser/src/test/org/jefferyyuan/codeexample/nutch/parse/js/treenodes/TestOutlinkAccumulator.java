@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jefferyyuan.codeexample.nutch.parse.js.treenodes;
+
+import junit.framework.TestCase;
+
+import org.apache.nutch.parse.Outlink;
+
+/**
+ * JUnit test case for {@link OutlinkAccumulator}.
+ */
+public class TestOutlinkAccumulator extends TestCase {
+
+  public void testAdd() throws Exception {
+    OutlinkAccumulator outlinks = new OutlinkAccumulator();
+    // grows past the initial capacity
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(outlinks.add("http://a.com/" + i + ".htm", "a" + i));
+    }
+    Outlink old = new Outlink("http://a.com/old.htm", "old");
+    assertTrue(outlinks.add(old));
+    assertFalse(outlinks.add("http://a.com/7.htm", "again"));
+    assertFalse(outlinks.add(new Outlink("http://a.com/old.htm", "again")));
+    assertEquals(1001, outlinks.size());
+
+    Outlink[] links = outlinks.toOutlinks();
+    assertEquals(1001, links.length);
+    // first one wins, in order
+    assertEquals("http://a.com/7.htm", links[7].getToUrl());
+    assertEquals("a7", links[7].getAnchor());
+    assertSame(old, links[1000]);
+  }
+
+  public void testAnchorIsKept() throws Exception {
+    OutlinkAccumulator outlinks = new OutlinkAccumulator();
+    outlinks.add("http://a.com/1.htm", "");
+    outlinks.add("http://a.com/2.htm", "script");
+    Outlink parsed = new Outlink("http://a.com/1.htm", "parsed");
+    assertFalse(outlinks.add(parsed));
+    assertFalse(outlinks.add(new Outlink("http://a.com/2.htm", "parsed")));
+    assertFalse(outlinks.add(new Outlink("http://a.com/1.htm", "later")));
+
+    Outlink[] links = outlinks.toOutlinks();
+    assertEquals(2, links.length);
+    assertSame(parsed, links[0]);
+    assertEquals("script", links[1].getAnchor());
+  }
+
+  public void testTruncate() {
+    OutlinkAccumulator outlinks = new OutlinkAccumulator();
+    outlinks.add("http://a.com/1.htm", "");
+    outlinks.add("http://a.com/2.htm", "");
+    outlinks.add("http://a.com/3.htm", "");
+    outlinks.move(2, 1);
+    outlinks.truncate(2);
+    assertEquals(2, outlinks.size());
+    assertEquals("http://a.com/3.htm", outlinks.getUrl(1));
+    // dropped URLs can be added again, kept ones not
+    assertTrue(outlinks.add("http://a.com/2.htm", ""));
+    assertFalse(outlinks.add("http://a.com/3.htm", ""));
+  }
+
+  public void testReset() {
+    OutlinkAccumulator outlinks = new OutlinkAccumulator();
+    for (int i = 0; i <= OutlinkAccumulator.MAX_RETAINED; i++) {
+      outlinks.add("http://a.com/" + i + ".htm", "");
+    }
+    outlinks.reset();
+    assertEquals(0, outlinks.size());
+    assertEquals(0, outlinks.toOutlinks().length);
+    assertTrue(outlinks.add("http://a.com/1.htm", ""));
+    outlinks.reset();
+    assertTrue(outlinks.add("http://a.com/1.htm", ""));
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jefferyyuan.codeexample.nutch.parse.js.treenodes;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit test case for {@link OutlinkDedup}.
+ */
+public class TestOutlinkDedup extends TestCase {
+
+  public void testFilter() {
+    OutlinkDedup dedup = new OutlinkDedup(1 << 16, 1000);
+    String[] links = { "http://a.com/one.htm", "http://a.com/two.htm" };
+    assertEquals(2, filter(dedup, "http://a.com/x/page1.htm", links).size());
+    // same host, already emitted
+    assertEquals(0, filter(dedup, "http://a.com/x/page2.htm", links).size());
+    OutlinkAccumulator kept = filter(dedup, "http://a.com/page3.htm",
+        links[0], "http://a.com/three.htm", links[1]);
+    assertEquals(1, kept.size());
+    assertEquals("http://a.com/three.htm", kept.getUrl(0));
+    // other hosts emit them once more
+    assertEquals(2, filter(dedup, "http://b.com:8080/page1.htm", links).size());
+    assertEquals(9, dedup.getChecked());
+    assertEquals(4, dedup.getSuppressed());
+  }
+
+  private static OutlinkAccumulator filter(OutlinkDedup dedup, String url,
+      String... links) {
+    OutlinkAccumulator outlinks = new OutlinkAccumulator();
+    for (String link : links) {
+      outlinks.add(link, "");
+    }
+    dedup.filter(url, outlinks);
+    return outlinks;
+  }
+
+  public void testGenerations() {
+    OutlinkDedup dedup = new OutlinkDedup(1 << 12, 100);
+    assertTrue(dedup.add("a.com", "http://a.com/first.htm"));
+    for (int i = 0; i < 150; i++) {
+      dedup.add("a.com", "http://a.com/" + i + ".htm");
+    }
+    // in the previous generation
+    assertFalse(dedup.add("a.com", "http://a.com/first.htm"));
+    for (int i = 150; i < 400; i++) {
+      dedup.add("a.com", "http://a.com/" + i + ".htm");
+    }
+    // evicted with the old generations
+    assertTrue(dedup.add("a.com", "http://a.com/0.htm"));
+  }
+
+  public void testHost() {
+    assertEquals("a.com:8080", OutlinkDedup.host("http://a.com:8080/b?c"));
+    assertEquals("a.com", OutlinkDedup.host("https://a.com"));
+    assertEquals("", OutlinkDedup.host("file:///tmp/a.js"));
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jefferyyuan.codeexample.nutch.parse.js.treenodes;
+
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit test case for {@link UrlSuffixMatcher}.
+ */
+public class TestUrlSuffixMatcher extends TestCase {
+
+  private static final String[] URLS = { "http://localhost/a.js",
+      "http://localhost/a.JS", "http://localhost/ajs", "http://localhost/a.js?v=1",
+      "http://localhost/tree_nodes.js", "http://localhost/tree_nodes_js",
+      "http://localhost/xtree_nodes.js", "js", "" };
+
+  public void testSameAsPattern() {
+    String[] patterns = { ".*\\.js", ".*/tree_nodes.js", ".*", ".*\\/a\\.js" };
+    for (String pattern : patterns) {
+      UrlSuffixMatcher matcher = UrlSuffixMatcher.compile(pattern);
+      assertNotNull(pattern, matcher);
+      Pattern regex = Pattern.compile(pattern, Pattern.DOTALL);
+      for (String url : URLS) {
+        assertEquals(pattern + " " + url, regex.matcher(url).matches(),
+            matcher.matches(url));
+      }
+    }
+  }
+
+  public void testNotASuffix() {
+    assertNull(UrlSuffixMatcher.compile("http://.*\\.js"));
+    assertNull(UrlSuffixMatcher.compile(".*\\.(js|json)"));
+    assertNull(UrlSuffixMatcher.compile(".*\\.js?"));
+    assertNull(UrlSuffixMatcher.compile(".*\\d\\.js"));
+    assertNull(UrlSuffixMatcher.compile(".*\\"));
+  }
+}
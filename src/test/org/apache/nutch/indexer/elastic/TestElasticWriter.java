@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.indexer.elastic;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.nutch.indexer.NutchDocument;
+import org.apache.nutch.util.NutchConfiguration;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.node.Node;
+import org.elasticsearch.node.NodeBuilder;
+
+/**
+ * JUnit test case for {@link ElasticWriter}, against a node in the same
+ * JVM.
+ */
+public class TestElasticWriter extends TestCase {
+
+  private static final long CLOSE_TIMEOUT_MS = 60000L;
+
+  private File dataDir;
+  private Node node;
+  private Configuration conf;
+
+  @Override
+  protected void setUp() throws Exception {
+    dataDir = new File(System.getProperty("java.io.tmpdir"),
+        "test-elastic-" + System.nanoTime());
+    node = NodeBuilder.nodeBuilder().local(true).settings(
+        ImmutableSettings.settingsBuilder()
+            .put("cluster.name", "test-" + System.nanoTime())
+            .put("path.data", dataDir.getPath())
+            .put("gateway.type", "none")
+            .put("http.enabled", false)
+            .put("index.number_of_shards", 1)
+            .put("index.number_of_replicas", 0)).node();
+    node.client().admin().cluster().prepareHealth().setWaitForYellowStatus()
+        .execute().actionGet();
+    conf = NutchConfiguration.create();
+    conf.set(ElasticConstants.INDEX, "nutch");
+    conf.setInt(ElasticConstants.MAX_BULK_DOCS, 2);
+    conf.setLong(ElasticConstants.RETRY_BACKOFF_MS, 1);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    node.close();
+    FileUtil.fullyDelete(dataDir);
+  }
+
+  public void testWrite() throws Exception {
+    ElasticWriter writer = new ElasticWriter() {
+      @Override
+      Client connect(Configuration conf) {
+        return node.client();
+      }
+    };
+    writer.open(new TaskAttemptContext(conf, new TaskAttemptID()));
+    for (int i = 0; i < 5; i++) {
+      writer.write(document("http://localhost/" + i + ".htm", i + 1));
+    }
+    // dropped without ext.js.indexjs
+    writer.write(document("http://localhost/menu.js", 1));
+    writer.close();
+
+    Client client = node.client();
+    client.admin().indices().prepareRefresh("nutch").execute().actionGet();
+    assertEquals(5, client.prepareCount("nutch").execute().actionGet().count());
+    Map<String, Object> source = client.prepareGet("nutch", "doc",
+        "http://localhost/2.htm").execute().actionGet().sourceAsMap();
+    assertEquals("Page 2", source.get("title"));
+    assertEquals(3.0, ((Number) source.get(ElasticWriter.BOOST_FIELD))
+        .doubleValue(), 0.0001);
+  }
+
+  /**
+   * The transport client throws when it has no node to send to, before the
+   * request is sent; close() must fail rather than wait for it.
+   */
+  public void testNoNodeAvailable() throws Exception {
+    ServerSocket socket = new ServerSocket(0);
+    int port = socket.getLocalPort();
+    socket.close();
+    conf.set(ElasticConstants.HOST, "127.0.0.1");
+    conf.setInt(ElasticConstants.PORT, port);
+    conf.setInt(ElasticConstants.MAX_BULK_DOCS, 1);
+    conf.setInt(ElasticConstants.MAX_RETRIES, 1);
+    final ElasticWriter writer = new ElasticWriter();
+    writer.open(new TaskAttemptContext(conf, new TaskAttemptID()));
+    writer.write(document("http://localhost/1.htm", 1));
+
+    final Throwable[] thrown = new Throwable[1];
+    Thread closer = new Thread() {
+      @Override
+      public void run() {
+        try {
+          writer.close();
+        } catch (Throwable t) {
+          thrown[0] = t;
+        }
+      }
+    };
+    closer.setDaemon(true);
+    closer.start();
+    closer.join(CLOSE_TIMEOUT_MS);
+    assertFalse("close() hangs", closer.isAlive());
+    assertTrue(thrown[0] instanceof IOException);
+  }
+
+  private static NutchDocument document(String url, float score) {
+    NutchDocument doc = new NutchDocument();
+    doc.add("id", url);
+    doc.add("url", url);
+    doc.add("title", "Page " + url.substring(url.lastIndexOf('/') + 1,
+        url.lastIndexOf('.')));
+    doc.setScore(score);
+    return doc;
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.indexer.solr;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit test case for {@link NonCharCodepointStripper}.
+ */
+public class TestNonCharCodepointStripper extends TestCase {
+
+  private NonCharCodepointStripper stripper;
+
+  protected void setUp() {
+    stripper = new NonCharCodepointStripper();
+  }
+
+  public void testCleanInputIsReturnedAsIs() {
+    String clean = "Hello\tworld\r\n\u00e9\u4e2d\ud83d\ude00";
+    assertSame(clean, stripper.strip(clean));
+  }
+
+  public void testStripsControlAndBmpNonCharacters() {
+    assertEquals("abcd", stripper.strip("a\u0001b\ufffec\ufdd0\ufdefd\uffff"));
+    assertEquals("\ufdcf\ufdf0", stripper.strip("\ufdcf\ufdf0"));
+  }
+
+  public void testStripsSupplementaryNonCharacters() {
+    // U+1FFFE and U+10FFFF
+    assertEquals("ab", stripper.strip("a\ud83f\udffeb\udbff\udfff"));
+  }
+
+  public void testStripsUnpairedSurrogates() {
+    assertEquals("ab\ud83d\ude00", stripper.strip("a\ud800b\udc00\ud83d\ude00"));
+    assertEquals("a", stripper.strip("a\ud800"));
+  }
+
+  public void testBufferIsReused() {
+    assertEquals("abc", stripper.strip("\u0000abc\u0000"));
+    assertEquals("x", stripper.strip("x\u0002"));
+    assertEquals("abcdef", stripper.strip("abc\u0000def"));
+  }
+
+  public void testLargeBufferIsNotRetained() {
+    stripper.strip("abc\u0000def");
+    int retained = stripper.getRetainedLength();
+    char[] large = new char[NonCharCodepointStripper.MAX_RETAINED + 1];
+    Arrays.fill(large, 'a');
+    large[0] = '\u0000';
+    assertEquals(large.length - 1, stripper.strip(new String(large)).length());
+    assertEquals(retained, stripper.getRetainedLength());
+    assertEquals("abcdef", stripper.strip("abc\u0000def"));
+  }
+}
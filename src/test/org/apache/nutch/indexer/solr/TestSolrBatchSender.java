@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.indexer.solr;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.nutch.util.NutchConfiguration;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.util.NamedList;
+
+/**
+ * JUnit test case for {@link SolrBatchSender}.
+ */
+public class TestSolrBatchSender extends TestCase {
+
+  /**
+   * Rejects batches holding document "bad", fails all while down, or
+   * answers every request with <code>status</code> if it is set.
+   */
+  private static class StubSolrServer extends SolrServer {
+    private static final long serialVersionUID = 1L;
+
+    boolean down;
+    int status;
+    final List<Integer> requestSizes = new ArrayList<Integer>();
+    final List<String> added = new ArrayList<String>();
+
+    @Override
+    public NamedList<Object> request(SolrRequest request)
+        throws SolrServerException {
+      List<SolrInputDocument> docs = ((UpdateRequest) request).getDocuments();
+      requestSizes.add(docs.size());
+      if (down) {
+        throw new SolrServerException("Connection refused");
+      }
+      if (status != 0) {
+        throw new SolrException(status, "Status " + status);
+      }
+      for (SolrInputDocument doc : docs) {
+        if ("bad".equals(doc.getFieldValue("id"))) {
+          throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+              "Bad document");
+        }
+      }
+      for (SolrInputDocument doc : docs) {
+        added.add((String) doc.getFieldValue("id"));
+      }
+      return new NamedList<Object>();
+    }
+  }
+
+  private Configuration conf;
+  private File deadLetterFile;
+  private SolrDeadLetterLog deadLetters;
+  private StubSolrServer solr;
+  private SolrBatchSender sender;
+
+  @Override
+  protected void setUp() throws Exception {
+    conf = NutchConfiguration.create();
+    conf.setInt(SolrConstants.WRITER_THREADS, 0);
+    conf.setInt(SolrConstants.WRITER_RETRIES, 2);
+    conf.setLong(SolrConstants.WRITER_BACKOFF_MS, 1);
+    conf.setLong(SolrConstants.WRITER_BACKOFF_MAX_MS, 1);
+    conf.setInt(SolrConstants.WRITER_BREAKER_WINDOW, 2);
+    conf.setFloat(SolrConstants.WRITER_BREAKER_FAILURE_RATIO, 0.5f);
+    conf.setLong(SolrConstants.WRITER_BREAKER_OPEN_MS, 10);
+    deadLetterFile = File.createTempFile("solr-deadletter", ".xml");
+    deadLetterFile.delete();
+    deadLetters = new SolrDeadLetterLog(deadLetterFile);
+    solr = new StubSolrServer();
+    SolrWriterMetrics metrics = new SolrWriterMetrics(new TaskAttemptContext(
+        conf, new TaskAttemptID()), conf);
+    sender = new SolrBatchSender(solr, new ModifiableSolrParams(), conf,
+        deadLetters, metrics, 0);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    deadLetters.close();
+    deadLetterFile.delete();
+  }
+
+  public void testRejectedDocumentIsDeadLettered() throws Exception {
+    sender.send(batch("a", "b", "bad", "c"));
+    sender.close();
+    assertEquals(1, deadLetters.getCount());
+    assertEquals(3, solr.added.size());
+    assertFalse(solr.added.contains("bad"));
+  }
+
+  public void testOutageFailsWithoutSplitting() throws Exception {
+    solr.down = true;
+    try {
+      sender.send(batch("a", "b", "c", "d"));
+      fail("Solr is down");
+    } catch (IOException e) {
+      // expected
+    }
+    assertEquals(0, deadLetters.getCount());
+    for (int size : solr.requestSizes) {
+      assertEquals(4, size);
+    }
+  }
+
+  public void testNotFoundFailsWithoutDeadLetters() throws Exception {
+    solr.status = 404;
+    try {
+      sender.send(batch("a", "b", "c", "d"));
+      fail("Solr answered 404");
+    } catch (IOException e) {
+      // expected
+    }
+    assertEquals(0, deadLetters.getCount());
+    // neither retried nor split
+    assertEquals(1, solr.requestSizes.size());
+  }
+
+  public void testTooLargeIsSplit() throws Exception {
+    solr.status = 413;
+    sender.send(batch("a", "b"));
+    sender.close();
+    assertEquals(2, deadLetters.getCount());
+    assertEquals(3, solr.requestSizes.size());
+  }
+
+  private static List<SolrInputDocument> batch(String... ids) {
+    List<SolrInputDocument> batch = new ArrayList<SolrInputDocument>();
+    for (String id : ids) {
+      SolrInputDocument doc = new SolrInputDocument();
+      doc.addField("id", id);
+      batch.add(doc);
+    }
+    return batch;
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.indexer.solr;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit test case for {@link SolrCircuitBreaker}.
+ */
+public class TestSolrCircuitBreaker extends TestCase {
+
+  public void testOpenIsNotHealthy() throws Exception {
+    SolrCircuitBreaker breaker = new SolrCircuitBreaker(4, 0.5, 100);
+    breaker.recordSuccess();
+    breaker.recordSuccess();
+    breaker.recordFailure();
+    assertTrue(breaker.isHealthy());
+    breaker.recordFailure();
+    // open, and stays unhealthy until a request succeeds
+    assertFalse(breaker.isHealthy());
+    long start = System.currentTimeMillis();
+    breaker.awaitClosed();
+    assertTrue(System.currentTimeMillis() - start >= 90);
+    assertFalse(breaker.isHealthy());
+    breaker.recordSuccess();
+    assertTrue(breaker.isHealthy());
+  }
+
+  public void testSingleProbe() throws Exception {
+    final SolrCircuitBreaker breaker = new SolrCircuitBreaker(1, 1, 20);
+    breaker.recordFailure();
+    // this thread is the probe
+    breaker.awaitClosed();
+    Thread waiter = new Thread() {
+      @Override
+      public void run() {
+        try {
+          breaker.awaitClosed();
+        } catch (Exception e) {
+          // the thread ends either way
+        }
+      }
+    };
+    waiter.setDaemon(true);
+    waiter.start();
+    waiter.join(200);
+    assertTrue(waiter.isAlive());
+    breaker.recordSuccess();
+    waiter.join(5000);
+    assertFalse(waiter.isAlive());
+  }
+
+  public void testFailedProbeOpensAgain() throws Exception {
+    SolrCircuitBreaker breaker = new SolrCircuitBreaker(1, 1, 100);
+    breaker.recordFailure();
+    breaker.awaitClosed();
+    breaker.recordFailure();
+    assertFalse(breaker.isHealthy());
+    long start = System.currentTimeMillis();
+    breaker.awaitClosed();
+    assertTrue(System.currentTimeMillis() - start >= 90);
+  }
+}
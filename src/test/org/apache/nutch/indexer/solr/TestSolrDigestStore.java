@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.indexer.solr;
+
+import java.nio.LongBuffer;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.nutch.indexer.NutchDocument;
+
+/**
+ * JUnit test case for {@link SolrDigestStore}.
+ */
+public class TestSolrDigestStore extends TestCase {
+
+  private Configuration conf;
+  private Path dir;
+
+  protected void setUp() throws Exception {
+    conf = new Configuration();
+    dir = new Path(System.getProperty("java.io.tmpdir"),
+        "TestSolrDigestStore-" + System.nanoTime());
+  }
+
+  protected void tearDown() throws Exception {
+    FileSystem.getLocal(conf).delete(dir, true);
+  }
+
+  public void testSkipsUnchangedDocuments() throws Exception {
+    SolrDigestStore first = new SolrDigestStore(conf, dir, attempt(1));
+    assertFalse(first.isUnchanged("a", doc("a", "one", "1")));
+    assertFalse(first.isUnchanged("b", doc("b", "two", "1")));
+    first.commit();
+
+    SolrDigestStore second = new SolrDigestStore(conf, dir, attempt(2));
+    // only the ignored timestamp differs
+    assertTrue(second.isUnchanged("a", doc("a", "one", "2")));
+    assertFalse(second.isUnchanged("b", doc("b", "changed", "2")));
+    assertFalse(second.isUnchanged("c", doc("c", "three", "2")));
+    assertEquals(1, second.getUnchanged());
+  }
+
+  public void testOnlyTheSameTaskIsLookedUp() throws Exception {
+    SolrDigestStore task0 = new SolrDigestStore(conf, dir, attempt(1, 0));
+    assertFalse(task0.isUnchanged("a", doc("a", "one", "1")));
+    task0.commit();
+    SolrDigestStore task1 = new SolrDigestStore(conf, dir, attempt(1, 1));
+    assertFalse(task1.isUnchanged("b", doc("b", "two", "1")));
+    task1.commit();
+
+    SolrDigestStore second = new SolrDigestStore(conf, dir, attempt(2, 1));
+    assertTrue(second.isUnchanged("b", doc("b", "two", "2")));
+    // seen by another task, sent again
+    assertFalse(second.isUnchanged("a", doc("a", "one", "2")));
+  }
+
+  public void testAbortedRunIsNotUsed() throws Exception {
+    SolrDigestStore first = new SolrDigestStore(conf, dir, attempt(1));
+    assertFalse(first.isUnchanged("a", doc("a", "one", "1")));
+    first.abort();
+
+    SolrDigestStore second = new SolrDigestStore(conf, dir, attempt(2));
+    assertFalse(second.isUnchanged("a", doc("a", "one", "1")));
+  }
+
+  public void testSortAndFind() {
+    int n = 5000;
+    long[] pairs = new long[2 * n];
+    for (int i = 0; i < n; i++) {
+      pairs[2 * i] = (i * 0x9e3779b97f4a7c15L) % 1000;
+      pairs[2 * i + 1] = pairs[2 * i] * 7;
+    }
+    SolrDigestStore.sort(pairs, 0, n - 1);
+    for (int i = 1; i < n; i++) {
+      assertTrue(pairs[2 * (i - 1)] <= pairs[2 * i]);
+      assertEquals(pairs[2 * i] * 7, pairs[2 * i + 1]);
+    }
+    LongBuffer buffer = LongBuffer.wrap(pairs);
+    int i = SolrDigestStore.find(buffer, pairs[2 * 1234]);
+    assertEquals(pairs[2 * 1234], pairs[2 * i]);
+    assertEquals(-1, SolrDigestStore.find(buffer, 5000));
+  }
+
+  private static TaskAttemptID attempt(int job) {
+    return attempt(job, 0);
+  }
+
+  private static TaskAttemptID attempt(int job, int task) {
+    return new TaskAttemptID("test", job, true, task, 0);
+  }
+
+  private static NutchDocument doc(String id, String content, String tstamp) {
+    NutchDocument doc = new NutchDocument();
+    doc.add("id", id);
+    doc.add("content", content);
+    doc.add("tstamp", tstamp);
+    return doc;
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.indexer.solr;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.nutch.indexer.NutchDocument;
+import org.apache.nutch.util.NutchConfiguration;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.mortbay.jetty.Request;
+import org.mortbay.jetty.Server;
+import org.mortbay.jetty.handler.AbstractHandler;
+import org.mortbay.jetty.nio.SelectChannelConnector;
+
+/**
+ * JUnit test case for {@link SolrStreamingUpdater}.
+ */
+public class TestSolrStreamingUpdater extends TestCase {
+
+  private static final long CLOSE_TIMEOUT_MS = 30000L;
+
+  private Server server;
+  private SelectChannelConnector connector;
+  private Configuration conf;
+
+  @Override
+  protected void setUp() throws Exception {
+    server = new Server();
+    connector = new SelectChannelConnector();
+    connector.setHost("127.0.0.1");
+    connector.setPort(0);
+    server.addConnector(connector);
+    server.setHandler(new AbstractHandler() {
+      public void handle(String target, HttpServletRequest request,
+          HttpServletResponse response, int dispatch) throws IOException {
+        InputStream in = request.getInputStream();
+        byte[] buffer = new byte[8192];
+        while (in.read(buffer) > 0) {
+        }
+        response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        ((Request) request).setHandled(true);
+      }
+    });
+    server.start();
+    conf = NutchConfiguration.create();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    server.stop();
+  }
+
+  /** The failed request took the end of the stream. */
+  public void testCloseAfterFailedLastRequest() throws Exception {
+    assertCloseFails(newUpdater(100), 3);
+  }
+
+  /** A request failed before the end of the stream was queued. */
+  public void testCloseAfterFailedRequest() throws Exception {
+    assertCloseFails(newUpdater(1), 3);
+  }
+
+  private SolrStreamingUpdater newUpdater(int maxDocs) {
+    SolrWriterMetrics metrics = new SolrWriterMetrics(new TaskAttemptContext(
+        conf, new TaskAttemptID()), conf);
+    return new SolrStreamingUpdater(new HttpClient(), "http://127.0.0.1:"
+        + connector.getLocalPort() + "/solr", new ModifiableSolrParams(),
+        new SolrFieldPlan(SolrMappingReader.getInstance(conf)), metrics,
+        maxDocs, 0, 1);
+  }
+
+  private void assertCloseFails(final SolrStreamingUpdater updater, int docs)
+      throws Exception {
+    for (int i = 0; i < docs; i++) {
+      NutchDocument doc = new NutchDocument();
+      doc.add("id", "http://localhost/" + i + ".htm");
+      try {
+        updater.add(doc);
+      } catch (IOException e) {
+        // an earlier request failed already
+        break;
+      }
+    }
+    final Throwable[] thrown = new Throwable[1];
+    Thread closer = new Thread() {
+      @Override
+      public void run() {
+        try {
+          updater.close();
+        } catch (Throwable t) {
+          thrown[0] = t;
+        }
+      }
+    };
+    closer.setDaemon(true);
+    closer.start();
+    closer.join(CLOSE_TIMEOUT_MS);
+    assertFalse("close() hangs", closer.isAlive());
+    assertTrue(thrown[0] instanceof IOException);
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.indexer.solr;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * JUnit test case for {@link SolrWriter}.
+ */
+public class TestSolrWriter extends TestCase {
+
+  public void testServerUrls() throws Exception {
+    Configuration conf = new Configuration();
+    conf.set(SolrConstants.SERVER_URL, " http://localhost:8983/solr ");
+    assertEquals(Arrays.asList("http://localhost:8983/solr"),
+        Arrays.asList(SolrWriter.getServerUrls(conf)));
+
+    conf.set(SolrConstants.SERVER_URLS,
+        "http://a:8983/solr, http://b:8983/solr,, ");
+    assertEquals(Arrays.asList("http://a:8983/solr", "http://b:8983/solr"),
+        Arrays.asList(SolrWriter.getServerUrls(conf)));
+  }
+
+  public void testNoServerUrl() throws Exception {
+    Configuration conf = new Configuration();
+    conf.set(SolrConstants.SERVER_URLS, " , ");
+    try {
+      SolrWriter.getServerUrls(conf);
+      fail("No URL is set");
+    } catch (IOException e) {
+      assertTrue(e.getMessage().contains(SolrConstants.SERVER_URLS));
+      assertTrue(e.getMessage().contains(SolrConstants.SERVER_URL + " "));
+    }
+  }
+}
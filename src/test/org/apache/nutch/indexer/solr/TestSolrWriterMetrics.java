@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.indexer.solr;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.nutch.indexer.solr.SolrWriterMetrics.Counter;
+import org.apache.nutch.util.NutchConfiguration;
+
+/**
+ * JUnit test case for {@link SolrWriterMetrics}.
+ */
+public class TestSolrWriterMetrics extends TestCase {
+
+  public void testBucketsCoverAllValues() {
+    for (long v = 0; v < 100000; v++) {
+      int b = SolrWriterMetrics.Histogram.bucket(v);
+      assertTrue(v <= SolrWriterMetrics.Histogram.upperBound(b));
+      assertTrue(b == 0 || v > SolrWriterMetrics.Histogram.upperBound(b - 1));
+    }
+    int last = SolrWriterMetrics.Histogram.bucket(Long.MAX_VALUE);
+    assertEquals(Long.MAX_VALUE, SolrWriterMetrics.Histogram.upperBound(last));
+  }
+
+  public void testPercentiles() {
+    SolrWriterMetrics.Histogram h = new SolrWriterMetrics.Histogram();
+    assertEquals(0, h.percentile(0.5));
+    for (int i = 1; i <= 1000; i++) {
+      h.add(i);
+    }
+    long p50 = h.percentile(0.5);
+    long p99 = h.percentile(0.99);
+    assertTrue(p50 >= 500 && p50 <= 625);
+    assertTrue(p99 >= 990 && p99 <= 1000);
+    assertEquals(1000, h.getMax());
+  }
+
+  public void testCounters() {
+    Configuration conf = NutchConfiguration.create();
+    SolrWriterMetrics metrics = newMetrics(conf);
+    metrics.increment(Counter.DOCS);
+    metrics.add(Counter.DOCS, 2);
+    metrics.recordBatch(3, 1000);
+    metrics.recordBatch(5, 500);
+    metrics.recordRequest(2500000L);
+    metrics.recordFailedRequest(1500000L);
+    assertEquals(3, metrics.get(Counter.DOCS));
+    assertEquals(2, metrics.get(Counter.BATCHES));
+    assertEquals(1500, metrics.get(Counter.ESTIMATED_BYTES));
+    assertEquals(1, metrics.get(Counter.FAILED_REQUESTS));
+    // counted in nanoseconds, read in milliseconds
+    assertEquals(4, metrics.get(Counter.NETWORK_MS));
+  }
+
+  public void testReport() throws Exception {
+    File dir = new File(System.getProperty("java.io.tmpdir"),
+        "test-solr-metrics-" + System.nanoTime());
+    Configuration conf = NutchConfiguration.create();
+    conf.set(SolrConstants.METRICS_DIR, dir.getPath());
+    SolrWriterMetrics metrics = newMetrics(conf);
+    try {
+      metrics.add(Counter.DOCS, 7);
+      metrics.recordBatch(7, 2048);
+      metrics.recordRequest(3000000L);
+      metrics.report();
+      File[] files = dir.listFiles();
+      assertEquals(1, files.length);
+      Properties report = new Properties();
+      InputStream in = new FileInputStream(files[0]);
+      try {
+        report.load(in);
+      } finally {
+        in.close();
+      }
+      assertEquals("7", report.getProperty("docs"));
+      assertEquals("2048", report.getProperty("estimated_bytes"));
+      assertEquals("3", report.getProperty("request_ms_max"));
+      assertEquals("7", report.getProperty("batch_docs_max"));
+
+      // rewritten with the new totals
+      metrics.add(Counter.DOCS, 1);
+      metrics.report();
+      report.clear();
+      in = new FileInputStream(files[0]);
+      try {
+        report.load(in);
+      } finally {
+        in.close();
+      }
+      assertEquals("8", report.getProperty("docs"));
+    } finally {
+      FileUtil.fullyDelete(dir);
+    }
+  }
+
+  private static SolrWriterMetrics newMetrics(Configuration conf) {
+    return new SolrWriterMetrics(new TaskAttemptContext(conf,
+        new TaskAttemptID()), conf);
+  }
+}